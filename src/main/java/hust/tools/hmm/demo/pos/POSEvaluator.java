@@ -22,7 +22,11 @@ public class POSEvaluator {
 		this.order = order;
 	}
 	
-	public void eval() {
+	/**
+	 * 评估测试样本的标注结果，评估不共享状态，多个评估器可在不同线程中同时运行
+	 * @return	评价结果
+	 */
+	public EvaluateMeasure eval() {
 		EvaluateMeasure measure = new EvaluateMeasure(dict);
 		for(SupervisedHMMSample sample : samples) {
 			StateSequence refStateSeuence = sample.getStateSequence();
@@ -40,6 +44,6 @@ public class POSEvaluator {
 			measure.updateScores(words, refPOS, prePOS);
 		}
 						
-		System.out.println(measure);
+		return measure;
 	}
 }
@@ -5,6 +5,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import hust.tools.hmm.io.AbstractHMMReader;
 import hust.tools.hmm.io.HMMWriter;
@@ -37,36 +42,138 @@ public class TrainAndEvaluate {
 	}
 	
 	/**
-	 * 交叉验证
+	 * 交叉验证，各折使用可用的处理器并行训练和评估
 	 * @param order		模型阶数
 	 * @param folds		交叉验证折数
+	 * @return			各折合并后的评价结果
 	 * @throws IOException
 	 */
-	public void crossValidation(int order, int folds) throws IOException {
+	public EvaluateMeasure crossValidation(int order, int folds) throws IOException {
+		return crossValidation(order, folds, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * 交叉验证，语料只计数一次：先在线程池中分别统计每折的计数并合并为全部语料的计数，
+	 * 每折的训练计数由全部计数减去该折的计数得到，再独立训练和评估，全部完成后按折的顺序输出各折结果并合并
+	 * @param order		模型阶数
+	 * @param folds		交叉验证折数
+	 * @param threads	并行的线程数
+	 * @return			各折合并后的评价结果
+	 * @throws IOException
+	 */
+	public EvaluateMeasure crossValidation(int order, int folds, int threads) throws IOException {
 		if(folds < 1)
 			throw new IllegalArgumentException("折数不能小于1：" + folds);
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数应为正整数： threads = " + threads);
 		System.out.println("cross validating...");
 
+		List<List<SupervisedHMMSample>> foldSamples = split(folds);
+		List<EvaluateMeasure> measures = evaluateFolds(foldSamples, threads);
+		
+		EvaluateMeasure total = new EvaluateMeasure();
 		for(int i = 0; i < folds; i++) {
-			List<SupervisedHMMSample> trainSamples = new ArrayList<>();
-			List<SupervisedHMMSample> testSamples = new ArrayList<>();
-			int flag = 0;
+			int testSize = foldSamples.get(i).size();
 			System.out.println("\nRunning : fold-" + (i + 1));
-			for(SupervisedHMMSample sample : samples) {
-				if(flag % folds == i)
-					testSamples.add(sample);
-				else
-					trainSamples.add(sample);
+			System.out.println("totalSize = " + samples.size() + "\ttrainSize = " + (samples.size() - testSize) + "\ttestSize = " + testSize);
+			System.out.println(measures.get(i));
+			total.mergeInto(measures.get(i));
+		}
+		
+		System.out.println("\nOverall :");
+		System.out.println(total);
+		System.out.println("cross validate over.");
+		
+		return total;
+	}
+	
+	/**
+	 * 将样本按顺序轮流分入各折
+	 * @param folds	交叉验证折数
+	 * @return		各折的样本
+	 */
+	List<List<SupervisedHMMSample>> split(int folds) {
+		List<List<SupervisedHMMSample>> foldSamples = new ArrayList<>();
+		for(int i = 0; i < folds; i++)
+			foldSamples.add(new ArrayList<SupervisedHMMSample>());
+		int flag = 0;
+		for(SupervisedHMMSample sample : samples)
+			foldSamples.get(flag++ % folds).add(sample);
+		
+		return foldSamples;
+	}
+	
+	/**
+	 * 由全部语料的计数减去留出一折的计数，得到该折的训练计数，不修改传入的计数器
+	 * @param totalCounter	全部语料的计数
+	 * @param testCounter	留出一折的计数
+	 * @return				训练计数
+	 */
+	TransitionAndEmissionCounter trainCounter(TransitionAndEmissionCounter totalCounter, TransitionAndEmissionCounter testCounter) {
+		TransitionAndEmissionCounter trainCounter = new TransitionAndEmissionCounter(order);
+		trainCounter.merge(totalCounter);
+		trainCounter.subtract(testCounter);
+		
+		return trainCounter;
+	}
+	
+	/**
+	 * 在线程池中统计每折的计数，再并行训练和评估各折，全部完成后返回按折的顺序排列的评价结果
+	 * @param foldSamples	各折的样本
+	 * @param threads		并行的线程数
+	 * @return				各折的评价结果
+	 * @throws IOException
+	 */
+	List<EvaluateMeasure> evaluateFolds(final List<List<SupervisedHMMSample>> foldSamples, int threads) throws IOException {
+		int folds = foldSamples.size();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, folds));
+		try {
+			//统计每折的计数
+			List<Future<TransitionAndEmissionCounter>> foldCounters = new ArrayList<>();
+			for(final List<SupervisedHMMSample> testSamples : foldSamples) {
+				foldCounters.add(executor.submit(new Callable<TransitionAndEmissionCounter>() {
+					@Override
+					public TransitionAndEmissionCounter call() {
+						return new TransitionAndEmissionCounter(testSamples, order);
+					}
+				}));
+			}
+			
+			final TransitionAndEmissionCounter totalCounter = new TransitionAndEmissionCounter(order);
+			for(Future<TransitionAndEmissionCounter> counter : foldCounters)
+				totalCounter.merge(counter.get());
+			
+			//每折的训练计数为全部计数减去该折的计数
+			List<Future<EvaluateMeasure>> futures = new ArrayList<>();
+			for(int i = 0; i < folds; i++) {
+				final List<SupervisedHMMSample> testSamples = foldSamples.get(i);
+				final TransitionAndEmissionCounter testCounter = foldCounters.get(i).get();
 				
-				flag++;
+				futures.add(executor.submit(new Callable<EvaluateMeasure>() {
+					@Override
+					public EvaluateMeasure call() throws IOException {
+						HMModel model = train(trainCounter(totalCounter, testCounter));
+						
+						return evaluate(model, testSamples);
+					}
+				}));
 			}
-			System.out.println("totalSize = " + samples.size() + "\ttrainSize = " + trainSamples.size() + "\ttestSize = " + testSamples.size());
 			
-			HMModel model = train(trainSamples);
-			evaluate(model, testSamples);
+			List<EvaluateMeasure> measures = new ArrayList<>(folds);
+			for(Future<EvaluateMeasure> future : futures)
+				measures.add(future.get());
+			
+			return measures;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("交叉验证被中断", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IllegalStateException("交叉验证的训练或评估失败", e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
-		
-		System.out.println("cross validate over.");
 	}
 	
 	/**
@@ -76,8 +183,31 @@ public class TrainAndEvaluate {
 	 * @throws IOException
 	 */
 	public HMModel train(List<SupervisedHMMSample> trainsamples) throws IOException {
-		TransitionAndEmissionCounter counter = new TransitionAndEmissionCounter(trainsamples, order);
-		
+		return train(new TransitionAndEmissionCounter(trainsamples, order));
+	}
+	
+	/**
+	 * 流式读取语料并训练模型，内存中每次只保留一个句子
+	 * @param corpus	word/TAG格式的训练语料
+	 * @return			HMM模型
+	 * @throws IOException
+	 */
+	public HMModel train(File corpus) throws IOException {
+		WordTagSampleStream stream = new WordTagSampleStream(corpus);
+		try {
+			return train(new TransitionAndEmissionCounter(stream, order));
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * 由计数训练模型
+	 * @param counter	转移和发射的计数
+	 * @return			HMM模型
+	 * @throws IOException
+	 */
+	public HMModel train(TransitionAndEmissionCounter counter) throws IOException {
 		HMMTrainer learner = null;
 		switch (smooth.toUpperCase()) {
 		case "ADD":
@@ -109,8 +239,9 @@ public class TrainAndEvaluate {
 	 * 测试评估
 	 * @param hmModel		模型
 	 * @param testSamples	测试样本（带词性）
+	 * @return				评价结果
 	 */
-	public void evaluate(HMModel hmModel, List<SupervisedHMMSample> testSamples) {
+	public EvaluateMeasure evaluate(HMModel hmModel, List<SupervisedHMMSample> testSamples) {
 		HMM hmm = new HMMWithViterbi(hmModel);
 		Observation[] observations = hmModel.getObservations();
 		HashSet<String> dict = new HashSet<>();
@@ -118,7 +249,7 @@ public class TrainAndEvaluate {
 			dict.add(observation.toString());
 				
 		POSEvaluator evaluator = new POSEvaluator(hmm, dict, testSamples, order);
-		evaluator.eval();
+		return evaluator.eval();
 	}
 	
 	/**
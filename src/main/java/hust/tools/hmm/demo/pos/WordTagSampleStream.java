@@ -0,0 +1,77 @@
+package hust.tools.hmm.demo.pos;
+
+import java.io.File;
+import java.io.IOException;
+
+import hust.tools.hmm.stream.AbstractHMMSample;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.stream.SupervisedHMMSampleStream;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+import opennlp.tools.util.MarkableFileInputStreamFactory;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.PlainTextByLineStream;
+
+/**
+ *<ul>
+ *<li>Description: 词性标注语料的样本流，每行一个句子，词与词性以word/TAG的形式用空白分隔，空行被跳过
+ *<li>每次只读取并解析一行，可直接交给TransitionAndEmissionCounter计数而无需将整个语料载入内存
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class WordTagSampleStream extends SupervisedHMMSampleStream<String> {
+
+	public WordTagSampleStream(ObjectStream<String> lineStream) {
+		super(lineStream);
+	}
+
+	/**
+	 * 按行读取utf8编码的语料文件
+	 * @param file	语料文件
+	 * @throws IOException
+	 */
+	public WordTagSampleStream(File file) throws IOException {
+		this(new PlainTextByLineStream(new MarkableFileInputStreamFactory(file), "utf8"));
+	}
+
+	@Override
+	public AbstractHMMSample read() throws IOException {
+		String line = null;
+		while((line = samples.read()) != null) {
+			line = line.trim();
+			if(!line.equals(""))
+				return parse(line);
+		}
+
+		return null;
+	}
+
+	/**
+	 * 解析一行word/TAG形式的句子，以最后一个"/"分隔词与词性
+	 * @param line	句子
+	 * @return		样本
+	 * @throws IOException	词与词性的格式不正确
+	 */
+	public static SupervisedHMMSample parse(String line) throws IOException {
+		String[] wordTags = line.split("\\s+");
+		State[] states = new State[wordTags.length];
+		Observation[] observations = new Observation[wordTags.length];
+
+		for(int i = 0; i < wordTags.length; i++) {
+			int split = wordTags[i].lastIndexOf('/');
+			if(split <= 0 || split == wordTags[i].length() - 1)
+				throw new IOException("错误的词与词性格式：" + wordTags[i]);
+
+			observations[i] = new StringObservation(wordTags[i].substring(0, split));
+			states[i] = new StringState(wordTags[i].substring(split + 1));
+		}
+
+		return new SupervisedHMMSample(new StateSequence(states), new ObservationSequence(observations));
+	}
+}
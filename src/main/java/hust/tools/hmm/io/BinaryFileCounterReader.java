@@ -0,0 +1,107 @@
+package hust.tools.hmm.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import hust.tools.hmm.learn.TransitionAndEmissionCounter;
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 读取BinaryFileCounterWriter写出的计数快照，恢复转移和发射的计数器
+ *<li>多个快照恢复的计数器可通过TransitionAndEmissionCounter.merge合并，合并后交给Supervised*HMMTrainer训练
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class BinaryFileCounterReader {
+
+	private DataInputStream dis;
+
+	public BinaryFileCounterReader(String pathname) throws IOException {
+		this(new File(pathname));
+	}
+
+	public BinaryFileCounterReader(File file) throws IOException {
+		this(new FileInputStream(file));
+	}
+
+	public BinaryFileCounterReader(InputStream is) {
+		this(new DataInputStream(new BufferedInputStream(is)));
+	}
+
+	public BinaryFileCounterReader(DataInputStream dis) {
+		this.dis = dis;
+	}
+
+	/**
+	 * 读取计数快照并关闭输入流
+	 * @return	恢复的计数器
+	 * @throws IOException	快照格式不正确或计数总数不一致
+	 */
+	public TransitionAndEmissionCounter readCounter() throws IOException {
+		try {
+			if(dis.readInt() != BinaryFileCounterWriter.MAGIC)
+				throw new IOException("不是计数快照文件");
+
+			int version = dis.readInt();
+			if(version != BinaryFileCounterWriter.VERSION)
+				throw new IOException("不支持的计数快照版本： " + version);
+
+			TransitionAndEmissionCounter counter = new TransitionAndEmissionCounter(dis.readInt());
+			int totalStatesCount = dis.readInt();
+			int totalStartStatesCount = dis.readInt();
+
+			Dictionary dict = counter.getDictionary();
+			State[] states = new State[dis.readInt()];
+			for(int i = 0; i < states.length; i++) {
+				states[i] = new StringState(dis.readUTF());
+				dict.add(states[i]);
+			}
+
+			Observation[] observations = new Observation[dis.readInt()];
+			for(int i = 0; i < observations.length; i++) {
+				observations[i] = new StringObservation(dis.readUTF());
+				dict.add(observations[i]);
+			}
+
+			int entries = dis.readInt();
+			for(int i = 0; i < entries; i++) {
+				State state = states[dis.readInt()];
+				counter.addStartStateCount(state, dis.readInt());
+			}
+
+			entries = dis.readInt();
+			for(int i = 0; i < entries; i++) {
+				State[] sequence = new State[dis.readByte()];
+				for(int j = 0; j < sequence.length; j++)
+					sequence[j] = states[dis.readInt()];
+				counter.addTransitionCount(new StateSequence(sequence), dis.readInt());
+			}
+
+			entries = dis.readInt();
+			for(int i = 0; i < entries; i++) {
+				State state = states[dis.readInt()];
+				Observation observation = observations[dis.readInt()];
+				counter.addEmissionCount(state, observation, dis.readInt());
+			}
+
+			if(counter.getTotalStatesCount() != totalStatesCount || counter.getTotalStartStatesCount() != totalStartStatesCount)
+				throw new IOException("计数快照已损坏：计数总数不一致");
+
+			return counter;
+		} finally {
+			dis.close();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package hust.tools.hmm.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import hust.tools.hmm.learn.TransitionAndEmissionCounter;
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 将转移和发射的计数写入二进制快照文件，用于分布式训练：各节点分别计数并写出快照，合并后再训练模型
+ *<li>快照中状态和观测只在索引表中以字符串形式出现一次，计数条目均以索引表示
+ *<li>格式：魔数、版本、阶数、隐藏状态总数、起始状态总数、隐藏状态表、观测状态表、起始状态计数、转移计数、发射计数
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class BinaryFileCounterWriter {
+
+	/**
+	 * 计数快照文件的魔数
+	 */
+	public static final int MAGIC = 0x484D4D43;
+
+	/**
+	 * 计数快照文件的版本
+	 */
+	public static final int VERSION = 1;
+
+	private TransitionAndEmissionCounter counter;
+
+	private DataOutputStream dos;
+
+	public BinaryFileCounterWriter(TransitionAndEmissionCounter counter, String pathname) throws IOException {
+		this(counter, new File(pathname));
+	}
+
+	public BinaryFileCounterWriter(TransitionAndEmissionCounter counter, File file) throws IOException {
+		this(counter, new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+	}
+
+	public BinaryFileCounterWriter(TransitionAndEmissionCounter counter, DataOutputStream dos) {
+		this.counter = counter;
+		this.dos = dos;
+	}
+
+	/**
+	 * 写出计数快照并关闭输出流
+	 * @throws IOException
+	 */
+	public void persist() throws IOException {
+		Dictionary dict = counter.getDictionary();
+
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(counter.getOrder());
+		dos.writeInt(counter.getTotalStatesCount());
+		dos.writeInt(counter.getTotalStartStatesCount());
+
+		dos.writeInt(dict.stateCount());
+		for(int i = 0; i < dict.stateCount(); i++)
+			dos.writeUTF(dict.getState(i).toString());
+
+		dos.writeInt(dict.observationCount());
+		for(int i = 0; i < dict.observationCount(); i++)
+			dos.writeUTF(dict.getObservation(i).toString());
+
+		writeStartStateCount(dict);
+		writeTransitionCount(dict);
+		writeEmissionCount(dict);
+
+		close();
+	}
+
+	/**
+	 * 写出起始状态计数：条目数，然后是每个条目的状态索引和计数
+	 */
+	private void writeStartStateCount(Dictionary dict) throws IOException {
+		int entries = 0;
+		for(int i = 0; i < dict.stateCount(); i++) {
+			if(counter.getStartStateCount(dict.getState(i)) > 0)
+				entries++;
+		}
+
+		dos.writeInt(entries);
+		for(int i = 0; i < dict.stateCount(); i++) {
+			int count = counter.getStartStateCount(dict.getState(i));
+			if(count > 0) {
+				dos.writeInt(i);
+				dos.writeInt(count);
+			}
+		}
+	}
+
+	/**
+	 * 写出转移计数：条目数，然后是每个条目的长度、各状态索引和计数
+	 */
+	private void writeTransitionCount(Dictionary dict) throws IOException {
+		dos.writeInt(counter.getTransitionCount().size());
+
+		Iterator<StateSequence> iterator = counter.transitionIterator();
+		while(iterator.hasNext()) {
+			StateSequence sequence = iterator.next();
+			dos.writeByte(sequence.length());
+			for(int i = 0; i < sequence.length(); i++)
+				dos.writeInt(dict.getIndex(sequence.get(i)));
+			dos.writeInt(counter.getSequenceCount(sequence));
+		}
+	}
+
+	/**
+	 * 写出发射计数：条目数，然后是每个条目的状态索引、观测索引和计数
+	 */
+	private void writeEmissionCount(Dictionary dict) throws IOException {
+		int entries = 0;
+		Iterator<State> states = counter.emissionIterator();
+		while(states.hasNext()) {
+			Iterator<Observation> observations = counter.iterator(states.next());
+			while(observations.hasNext()) {
+				observations.next();
+				entries++;
+			}
+		}
+
+		dos.writeInt(entries);
+		states = counter.emissionIterator();
+		while(states.hasNext()) {
+			State state = states.next();
+			int i = dict.getIndex(state);
+			Iterator<Observation> observations = counter.iterator(state);
+			while(observations.hasNext()) {
+				Observation observation = observations.next();
+				dos.writeInt(i);
+				dos.writeInt(dict.getIndex(observation));
+				dos.writeInt(counter.getEmissionCount(state, observation));
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		dos.flush();
+		dos.close();
+	}
+}
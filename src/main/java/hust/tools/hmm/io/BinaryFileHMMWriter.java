@@ -36,7 +36,7 @@ public class BinaryFileHMMWriter extends AbstractHMMWriter {
 	
 	@Override
 	public void writeCount(int count) throws IOException {
-		dos.writeLong(count);
+		dos.writeInt(count);
 	}
 
 
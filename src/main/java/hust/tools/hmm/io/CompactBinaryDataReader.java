@@ -0,0 +1,171 @@
+package hust.tools.hmm.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import hust.tools.hmm.model.ARPAEntry;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 读取CompactBinaryFileHMMWriter写出的紧凑二进制数据
+ *<li>隐藏状态表和观测状态表读入后按索引保存，其余条目中的索引直接查表得到状态和观测，不再解析字符串
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class CompactBinaryDataReader implements DataReader {
+
+	private DataInputStream dis;
+
+	/**
+	 * 已读取的数量的个数，依次为阶数、隐藏状态数量、观测状态数量等
+	 */
+	private int countsRead;
+
+	/**
+	 * 转移记录中隐藏状态索引的个数
+	 */
+	private int width;
+
+	/**
+	 * 按索引保存的隐藏状态表
+	 */
+	private State[] states;
+
+	/**
+	 * 按索引保存的观测状态表
+	 */
+	private Observation[] observations;
+
+	public CompactBinaryDataReader(File file) throws IOException {
+		this(new FileInputStream(file));
+	}
+
+	public CompactBinaryDataReader(InputStream in) throws IOException {
+		this(new DataInputStream(new BufferedInputStream(in)));
+	}
+
+	public CompactBinaryDataReader(DataInputStream dis) throws IOException {
+		this.dis = dis;
+
+		if(dis.readInt() != CompactBinaryFileHMMWriter.MAGIC)
+			throw new IOException("不是紧凑二进制模型文件");
+
+		int version = dis.readInt();
+		if(version != CompactBinaryFileHMMWriter.VERSION)
+			throw new IOException("不支持的紧凑二进制模型版本： " + version);
+	}
+
+	@Override
+	public int readCount() throws IOException {
+		int count = dis.readInt();
+		if(count < 0)
+			throw new IOException("数量不能为负： " + count);
+
+		switch (countsRead++) {
+		case 0:
+			width = count + 1;
+			break;
+		case 1:
+			states = new State[count];
+			break;
+		case 2:
+			observations = new Observation[count];
+			break;
+		default:
+			break;
+		}
+
+		return count;
+	}
+
+	@Override
+	public ObservationIndex readObservationIndex() throws IOException {
+		int index = dis.readInt();
+		if(index < 0 || index >= observations.length)
+			throw new IOException("观测索引越界： " + index);
+
+		observations[index] = new StringObservation(dis.readUTF());
+
+		return new ObservationIndex(observations[index], index);
+	}
+
+	@Override
+	public StateIndex readStateIndex() throws IOException {
+		int index = dis.readInt();
+		if(index < 0 || index >= states.length)
+			throw new IOException("隐藏状态索引越界： " + index);
+
+		states[index] = new StringState(dis.readUTF());
+
+		return new StateIndex(states[index], index);
+	}
+
+	@Override
+	public PiEntry readPi() throws IOException {
+		State state = state(dis.readInt());
+
+		return new PiEntry(state, dis.readDouble());
+	}
+
+	@Override
+	public TransitionEntry readTransitionMatrix() throws IOException {
+		State[] sequence = new State[width];
+		int length = 0;
+		for(int i = 0; i < width; i++) {
+			int index = dis.readInt();
+			if(index != -1)
+				sequence[length++] = state(index);
+		}
+
+		if(length < width) {
+			State[] array = new State[length];
+			System.arraycopy(sequence, 0, array, 0, length);
+			sequence = array;
+		}
+
+		ARPAEntry entry = new ARPAEntry(dis.readDouble(), dis.readDouble());
+
+		return new TransitionEntry(new StateSequence(sequence), entry);
+	}
+
+	@Override
+	public EmissionEntry readEmissionMatrix() throws IOException {
+		State state = state(dis.readInt());
+		int index = dis.readInt();
+		Observation observation;
+		if(index == -1)
+			observation = CompactBinaryFileHMMWriter.UNKNOWN;
+		else if(index >= 0 && index < observations.length && observations[index] != null)
+			observation = observations[index];
+		else
+			throw new IOException("观测索引越界： " + index);
+
+		return new EmissionEntry(state, observation, dis.readDouble());
+	}
+
+	/**
+	 * 返回索引对应的隐藏状态
+	 */
+	private State state(int index) throws IOException {
+		if(index < 0 || index >= states.length || states[index] == null)
+			throw new IOException("隐藏状态索引越界： " + index);
+
+		return states[index];
+	}
+
+	@Override
+	public void close() throws IOException {
+		dis.close();
+	}
+}
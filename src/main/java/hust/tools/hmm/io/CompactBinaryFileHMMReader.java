@@ -0,0 +1,37 @@
+package hust.tools.hmm.io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ *<ul>
+ *<li>Description: 读取紧凑二进制模型文件
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class CompactBinaryFileHMMReader extends AbstractHMMReader {
+
+	public CompactBinaryFileHMMReader(String pathname) throws IOException {
+		this(new File(pathname));
+	}
+
+	public CompactBinaryFileHMMReader(File file) throws IOException {
+		this(new CompactBinaryDataReader(file));
+	}
+
+	public CompactBinaryFileHMMReader(InputStream is) throws IOException {
+		super(new CompactBinaryDataReader(is));
+	}
+
+	public CompactBinaryFileHMMReader(DataInputStream dis) throws IOException {
+		super(new CompactBinaryDataReader(dis));
+	}
+
+	public CompactBinaryFileHMMReader(DataReader reader) {
+		super(reader);
+	}
+}
@@ -0,0 +1,133 @@
+package hust.tools.hmm.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import hust.tools.hmm.model.ARPAEntry;
+import hust.tools.hmm.model.HMModel;
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+
+/**
+ *<ul>
+ *<li>Description: 将模型写入紧凑的二进制文件，状态和观测只在索引表中以字符串形式出现一次，其余条目均为索引和原始的double值
+ *<li>格式：魔数、版本、各条目数量、隐藏状态表（索引、名称）、观测状态表（索引、名称）、初始概率（索引、概率）、
+ *<li>转移（order+1个索引，不足的以-1补齐、概率、回退权重）、发射（隐藏状态索引、观测索引（UNKNOWN为-1）、概率），转移和发射均为定长记录
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class CompactBinaryFileHMMWriter extends AbstractHMMWriter {
+
+	/**
+	 * 紧凑二进制模型文件的魔数
+	 */
+	public static final int MAGIC = 0x484D4D42;
+
+	/**
+	 * 紧凑二进制模型文件的版本
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * 字典外的观测，写为索引-1
+	 */
+	static final Observation UNKNOWN = new StringObservation("UNKNOWN");
+
+	private DataOutputStream dos;
+
+	private Dictionary dict;
+
+	/**
+	 * 转移记录中隐藏状态索引的个数
+	 */
+	private int width;
+
+	public CompactBinaryFileHMMWriter(HMModel model, String pathname) throws IOException {
+		this(model, new File(pathname));
+	}
+
+	public CompactBinaryFileHMMWriter(HMModel model, File file) throws IOException {
+		this(model, new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+	}
+
+	public CompactBinaryFileHMMWriter(HMModel model, DataOutputStream dos) throws IOException {
+		super(model);
+		this.dos = dos;
+		dict = model.getDict();
+		width = model.getOrder() + 1;
+
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+	}
+
+	@Override
+	public void writeCount(int count) throws IOException {
+		dos.writeInt(count);
+	}
+
+	@Override
+	public void writeStateIndex(StateIndex entry) throws IOException {
+		dos.writeInt(entry.getIndex());
+		dos.writeUTF(entry.getState().toString());
+	}
+
+	@Override
+	public void writeObservationIndex(ObservationIndex entry) throws IOException {
+		dos.writeInt(entry.getIndex());
+		dos.writeUTF(entry.getObservation().toString());
+	}
+
+	@Override
+	public void writePi(PiEntry entry) throws IOException {
+		dos.writeInt(indexOf(entry.getState()));
+		dos.writeDouble(entry.getLogProb());
+	}
+
+	@Override
+	public void writeTransitionMatrix(TransitionEntry entry) throws IOException {
+		StateSequence sequence = entry.getSequence();
+		if(sequence.length() > width)
+			throw new IOException("转移的长度超过模型阶数： " + sequence);
+
+		for(int i = 0; i < width; i++)
+			dos.writeInt(i < sequence.length() ? indexOf(sequence.get(i)) : -1);
+
+		ARPAEntry arpa = entry.getEntry();
+		dos.writeDouble(arpa.getLog_prob());
+		dos.writeDouble(arpa.getLog_bo());
+	}
+
+	@Override
+	public void writeEmissionMatrix(EmissionEntry entry) throws IOException {
+		Observation observation = entry.getObservation();
+		int index = dict.getIndex(observation);
+		if(index == -1 && !UNKNOWN.equals(observation))
+			throw new IOException("观测不在字典中： " + observation);
+
+		dos.writeInt(indexOf(entry.getState()));
+		dos.writeInt(index);
+		dos.writeDouble(entry.getLogProb());
+	}
+
+	private int indexOf(State state) throws IOException {
+		int index = dict.getIndex(state);
+		if(index == -1)
+			throw new IOException("隐藏状态不在字典中： " + state);
+
+		return index;
+	}
+
+	@Override
+	public void close() throws IOException {
+		dos.flush();
+		dos.close();
+	}
+}
@@ -0,0 +1,110 @@
+package hust.tools.hmm.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import hust.tools.hmm.model.HMModel;
+import hust.tools.hmm.model.HMModelBasedMappedFile;
+import hust.tools.hmm.utils.Dictionary;
+
+/**
+ *<ul>
+ *<li>Description: 将模型写成可由HMModelBasedMappedFile直接映射的文件，格式见HMModelBasedMappedFile
+ *<li>回退后的转移概率和每个(状态, 观测)的发射概率在写出时展开为稠密的表，映射模型只有1阶转移，不支持高阶模型
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class MappedFileHMMWriter {
+
+	private HMModel model;
+
+	private DataOutputStream dos;
+
+	public MappedFileHMMWriter(HMModel model, String pathname) throws IOException {
+		this(model, new File(pathname));
+	}
+
+	/**
+	 * 在打开文件之前检查模型的阶数，2阶模型不会留下空文件
+	 * @throws IllegalArgumentException	模型的阶数大于1
+	 */
+	public MappedFileHMMWriter(HMModel model, File file) throws IOException {
+		this(firstOrder(model), new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+	}
+
+	public MappedFileHMMWriter(HMModel model, DataOutputStream dos) {
+		this.model = firstOrder(model);
+		this.dos = dos;
+	}
+
+	/**
+	 * 返回1阶模型本身，模型的阶数大于1时抛出异常
+	 */
+	private static HMModel firstOrder(HMModel model) {
+		if(model.getOrder() > 1)
+			throw new IllegalArgumentException("映射模型只支持1阶模型： order = " + model.getOrder());
+
+		return model;
+	}
+
+	/**
+	 * 写出模型并关闭输出流，写出失败时也关闭输出流
+	 * @throws IOException
+	 */
+	public void persist() throws IOException {
+		try {
+			write();
+		} finally {
+			dos.close();
+		}
+	}
+
+	private void write() throws IOException {
+		Dictionary dict = model.getDict();
+		int N = model.statesCount();
+		int M = model.observationsCount();
+		if(HMModelBasedMappedFile.HEADER_BYTES + (N + (long) N * N + (long) (M + 1) * N) * 8 > Integer.MAX_VALUE)
+			throw new IOException("模型过大，概率区域超过2GB");
+
+		dos.writeInt(HMModelBasedMappedFile.MAGIC);
+		dos.writeInt(HMModelBasedMappedFile.VERSION);
+		dos.writeInt(N);
+		dos.writeInt(M);
+
+		for(int i = 0; i < N; i++)
+			dos.writeDouble(model.getLogPi(i));
+
+		for(int i = 0; i < N; i++) {
+			for(int j = 0; j < N; j++)
+				dos.writeDouble(model.transitionLogProb(i, j));
+		}
+
+		for(int t = 0; t < M; t++)
+			writeColumn(model.emissionLogProbs(t));
+		writeColumn(model.emissionLogProbs(-1));
+
+		for(int i = 0; i < N; i++)
+			writeString(dict.getState(i).toString());
+		for(int t = 0; t < M; t++)
+			writeString(dict.getObservation(t).toString());
+
+		dos.flush();
+	}
+
+	private void writeColumn(double[] column) throws IOException {
+		for(double logProb : column)
+			dos.writeDouble(logProb);
+	}
+
+	private void writeString(String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+}
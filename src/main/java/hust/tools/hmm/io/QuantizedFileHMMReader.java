@@ -0,0 +1,123 @@
+package hust.tools.hmm.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import hust.tools.hmm.model.HMModelBasedQuantized;
+import hust.tools.hmm.model.QuantizedTable;
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 读取QuantizedFileHMMWriter写出的量化模型文件
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class QuantizedFileHMMReader {
+
+	private DataInputStream dis;
+
+	public QuantizedFileHMMReader(String pathname) throws IOException {
+		this(new File(pathname));
+	}
+
+	public QuantizedFileHMMReader(File file) throws IOException {
+		this(new FileInputStream(file));
+	}
+
+	public QuantizedFileHMMReader(InputStream is) {
+		this(new DataInputStream(new BufferedInputStream(is)));
+	}
+
+	public QuantizedFileHMMReader(DataInputStream dis) {
+		this.dis = dis;
+	}
+
+	/**
+	 * 读取量化模型并关闭输入流
+	 * @return	量化模型
+	 * @throws IOException	文件格式不正确
+	 */
+	public HMModelBasedQuantized readModel() throws IOException {
+		try {
+			if(dis.readInt() != QuantizedFileHMMWriter.MAGIC)
+				throw new IOException("不是量化模型文件");
+
+			int version = dis.readInt();
+			if(version != QuantizedFileHMMWriter.VERSION)
+				throw new IOException("不支持的量化模型版本： " + version);
+
+			int bits = dis.readInt();
+			if(bits != 8 && bits != 16 && bits != 32)
+				throw new IOException("不支持的量化精度： " + bits);
+
+			Dictionary dict = new Dictionary();
+			int N = dis.readInt();
+			for(int i = 0; i < N; i++)
+				dict.put(new StringState(dis.readUTF()), i);
+
+			int M = dis.readInt();
+			for(int t = 0; t < M; t++)
+				dict.put(new StringObservation(dis.readUTF()), t);
+
+			QuantizedTable pi = readTable(bits);
+			QuantizedTable transition = readTable(bits);
+			QuantizedTable emission = readTable(bits);
+
+			try {
+				return new HMModelBasedQuantized(dict, pi, transition, emission);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("量化模型文件已损坏：" + e.getMessage());
+			}
+		} finally {
+			dis.close();
+		}
+	}
+
+	private QuantizedTable readTable(int bits) throws IOException {
+		int size = dis.readInt();
+		int codebookSize = dis.readInt();
+		if(size < 0 || codebookSize < 0 || codebookSize > 1 << bits)
+			throw new IOException("量化模型文件已损坏：概率表大小不正确");
+
+		if(bits == 32) {
+			float[] floats = new float[size];
+			for(int n = 0; n < size; n++)
+				floats[n] = dis.readFloat();
+
+			return new QuantizedTable(floats);
+		}
+
+		double[] codebook = new double[codebookSize];
+		for(int k = 0; k < codebookSize; k++)
+			codebook[k] = dis.readDouble();
+
+		if(bits == 8) {
+			byte[] codes = new byte[size];
+			dis.readFully(codes);
+			for(byte code : codes) {
+				if((code & 0xFF) >= codebookSize)
+					throw new IOException("量化模型文件已损坏：编码超出码本");
+			}
+
+			return new QuantizedTable(codebook, codes);
+		}
+
+		short[] codes = new short[size];
+		for(int n = 0; n < size; n++) {
+			codes[n] = dis.readShort();
+			if((codes[n] & 0xFFFF) >= codebookSize)
+				throw new IOException("量化模型文件已损坏：编码超出码本");
+		}
+
+		return new QuantizedTable(codebook, codes);
+	}
+}
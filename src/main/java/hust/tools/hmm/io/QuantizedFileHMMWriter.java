@@ -0,0 +1,107 @@
+package hust.tools.hmm.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import hust.tools.hmm.model.HMModelBasedQuantized;
+import hust.tools.hmm.model.QuantizedTable;
+import hust.tools.hmm.utils.Dictionary;
+
+/**
+ *<ul>
+ *<li>Description: 将量化模型写入二进制文件，各表按内存中的精度写出，文件大小与模型的内存占用相当
+ *<li>格式：魔数、版本、精度、隐藏状态表、观测状态表，然后依次为初始概率表、转移概率表和发射概率表
+ *<li>每张表为条目数量、码本大小、码本（double）、编码（精度为8时每个1字节，16时2字节），精度为32时码本大小为0，条目为float
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class QuantizedFileHMMWriter {
+
+	/**
+	 * 量化模型文件的魔数
+	 */
+	public static final int MAGIC = 0x484D4D51;
+
+	/**
+	 * 量化模型文件的版本
+	 */
+	public static final int VERSION = 1;
+
+	private HMModelBasedQuantized model;
+
+	private DataOutputStream dos;
+
+	public QuantizedFileHMMWriter(HMModelBasedQuantized model, String pathname) throws IOException {
+		this(model, new File(pathname));
+	}
+
+	public QuantizedFileHMMWriter(HMModelBasedQuantized model, File file) throws IOException {
+		this(model, new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+	}
+
+	public QuantizedFileHMMWriter(HMModelBasedQuantized model, DataOutputStream dos) {
+		this.model = model;
+		this.dos = dos;
+	}
+
+	/**
+	 * 写出量化模型并关闭输出流
+	 * @throws IOException
+	 */
+	public void persist() throws IOException {
+		Dictionary dict = model.getDict();
+
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(model.getBits());
+
+		dos.writeInt(dict.stateCount());
+		for(int i = 0; i < dict.stateCount(); i++)
+			dos.writeUTF(dict.getState(i).toString());
+
+		dos.writeInt(dict.observationCount());
+		for(int t = 0; t < dict.observationCount(); t++)
+			dos.writeUTF(dict.getObservation(t).toString());
+
+		writeTable(model.getPiTable());
+		writeTable(model.getTransitionTable());
+		writeTable(model.getEmissionTable());
+
+		close();
+	}
+
+	private void writeTable(QuantizedTable table) throws IOException {
+		int size = table.size();
+		dos.writeInt(size);
+
+		if(table.getBits() == 32) {
+			dos.writeInt(0);
+			for(int n = 0; n < size; n++)
+				dos.writeFloat((float) table.get(n));
+
+			return;
+		}
+
+		double[] codebook = table.getCodebook();
+		dos.writeInt(codebook.length);
+		for(double value : codebook)
+			dos.writeDouble(value);
+
+		for(int n = 0; n < size; n++) {
+			if(table.getBits() == 8)
+				dos.writeByte(table.getCode(n));
+			else
+				dos.writeShort(table.getCode(n));
+		}
+	}
+
+	private void close() throws IOException {
+		dos.flush();
+		dos.close();
+	}
+}
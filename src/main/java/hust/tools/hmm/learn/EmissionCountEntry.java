@@ -45,12 +45,39 @@ public class EmissionCountEntry {
 	 * @param observation	待增加的目标观测状态
 	 */
 	public void add(Observation observation) {
+		add(observation, 1);
+	}
+	
+	/**
+	 * 增加count个发射的目标观测状态
+	 * @param observation	待增加的目标观测状态
+	 * @param count			增加的数量
+	 */
+	public void add(Observation observation, int count) {
 		if(emissionCount.containsKey(observation))
-			emissionCount.put(observation, emissionCount.get(observation) + 1);
+			emissionCount.put(observation, emissionCount.get(observation) + count);
+		else
+			emissionCount.put(observation, count);
+		
+		total += count;
+	}
+	
+	/**
+	 * 减少count个发射的目标观测状态，数量减为0时删除该目标观测状态
+	 * @param observation	待减少的目标观测状态
+	 * @param count			减少的数量
+	 */
+	public void subtract(Observation observation, int count) {
+		int current = getObservationCount(observation);
+		if(current < count)
+			throw new IllegalArgumentException("发射计数不足： " + observation + " = " + current + " < " + count);
+		
+		if(current == count)
+			emissionCount.remove(observation);
 		else
-			emissionCount.put(observation, 1);
+			emissionCount.put(observation, current - count);
 		
-		total++;
+		total -= count;
 	}
 	
 	/**
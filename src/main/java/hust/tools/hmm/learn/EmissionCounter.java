@@ -36,12 +36,39 @@ public class EmissionCounter {
 	 * @param state	待增加的状态
 	 */
 	public void add(State state) {
+		add(state, 1);
+	}
+	
+	/**
+	 * 增加count个发射的目标状态
+	 * @param state	待增加的状态
+	 * @param count	增加的数量
+	 */
+	public void add(State state, int count) {
 		if(emissionCount.containsKey(state))
-			emissionCount.put(state, emissionCount.get(state) + 1);
+			emissionCount.put(state, emissionCount.get(state) + count);
+		else
+			emissionCount.put(state, count);
+		
+		total += count;
+	}
+	
+	/**
+	 * 减少count个发射的目标状态，数量减为0时删除该目标状态
+	 * @param state	待减少的状态
+	 * @param count	减少的数量
+	 */
+	public void subtract(State state, int count) {
+		int current = getStateCount(state);
+		if(current < count)
+			throw new IllegalArgumentException("发射计数不足： " + state + " = " + current + " < " + count);
+		
+		if(current == count)
+			emissionCount.remove(state);
 		else
-			emissionCount.put(state, 1);
+			emissionCount.put(state, current - count);
 		
-		total++;
+		total -= count;
 	}
 	
 	/**
@@ -1,11 +1,20 @@
 package hust.tools.hmm.learn;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import hust.tools.hmm.stream.SupervisedHMMSample;
 import hust.tools.hmm.stream.SupervisedHMMSampleStream;
 import hust.tools.hmm.utils.CommonUtils;
@@ -67,9 +76,26 @@ public class TransitionAndEmissionCounter {
 	 */
 	private final static int DEFAULT_ORDER = 1;
 	
+	/**
+	 * 并行计数时从样本流中每次读取交给一个线程计数的样本数量
+	 */
+	private final static int DEFAULT_SHARD_SIZE = 10000;
+	
 	private int order;
 	
 	public TransitionAndEmissionCounter() {
+		this(DEFAULT_ORDER);
+	}
+	
+	/**
+	 * 构造空的计数器，计数可由update、merge或addXXXCount方法加入
+	 * @param order	模型阶数
+	 */
+	public TransitionAndEmissionCounter(int order) {
+		if(order < 1)
+			throw new IllegalArgumentException("模型阶数和阈值应为正整数： order = " + order);
+		this.order = order;
+		
 		init();
 	}
 	
@@ -105,6 +131,101 @@ public class TransitionAndEmissionCounter {
 			update(sample);
 	}
 	
+	/**
+	 * 并行计数，每个线程将一段连续的样本计入私有的分片计数器，最后按样本顺序合并，结果与串行计数相同
+	 * @param samples	样本
+	 * @param order		模型阶数
+	 * @param threads	线程数
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public TransitionAndEmissionCounter(final List<SupervisedHMMSample> samples, final int order, int threads) throws InterruptedException, ExecutionException {
+		if(order < 1)
+			throw new IllegalArgumentException("模型阶数和阈值应为正整数： order = " + order);
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数应为正整数： threads = " + threads);
+		this.order = order;
+		
+		init();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<TransitionAndEmissionCounter>> shards = new ArrayList<>();
+			int shardSize = (samples.size() + threads - 1) / threads;
+			for(int from = 0; from < samples.size(); from += shardSize) {
+				final List<SupervisedHMMSample> shard = samples.subList(from, Math.min(from + shardSize, samples.size()));
+				shards.add(executor.submit(new Callable<TransitionAndEmissionCounter>() {
+					@Override
+					public TransitionAndEmissionCounter call() {
+						return new TransitionAndEmissionCounter(shard, order);
+					}
+				}));
+			}
+			
+			for(Future<TransitionAndEmissionCounter> shard : shards)
+				merge(shard.get());
+		}finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * 并行计数，从样本流中依次读取固定数量的样本交给线程计入私有的分片计数器，按读取顺序合并，结果与串行计数相同
+	 * @param sampleStream	样本流
+	 * @param order			模型阶数
+	 * @param threads		线程数
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public TransitionAndEmissionCounter(SupervisedHMMSampleStream<?> sampleStream, final int order, int threads) throws IOException, InterruptedException, ExecutionException {
+		if(order < 1)
+			throw new IllegalArgumentException("模型阶数和阈值应为正整数： order = " + order);
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数应为正整数： threads = " + threads);
+		this.order = order;
+		
+		init();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Queue<Future<TransitionAndEmissionCounter>> shards = new ArrayDeque<>();
+			List<SupervisedHMMSample> shard = new ArrayList<>(DEFAULT_SHARD_SIZE);
+			SupervisedHMMSample sample = null;
+			while((sample = (SupervisedHMMSample) sampleStream.read()) != null) {
+				shard.add(sample);
+				if(shard.size() == DEFAULT_SHARD_SIZE) {
+					shards.add(submit(executor, shard, order));
+					shard = new ArrayList<>(DEFAULT_SHARD_SIZE);
+					
+					//限制未合并的分片数量，避免读入的样本堆积在内存中
+					while(shards.size() > threads)
+						merge(shards.remove().get());
+				}
+			}
+			
+			if(shard.size() > 0)
+				shards.add(submit(executor, shard, order));
+			
+			while(!shards.isEmpty())
+				merge(shards.remove().get());
+		}finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * 提交一个分片的计数任务
+	 */
+	private static Future<TransitionAndEmissionCounter> submit(ExecutorService executor, final List<SupervisedHMMSample> shard, final int order) {
+		return executor.submit(new Callable<TransitionAndEmissionCounter>() {
+			@Override
+			public TransitionAndEmissionCounter call() {
+				return new TransitionAndEmissionCounter(shard, order);
+			}
+		});
+	}
+	
 	/**
 	 * 初始化数据
 	 */
@@ -148,6 +269,134 @@ public class TransitionAndEmissionCounter {
 		}		
 	}
 
+	/**
+	 * 将另一个计数器的计数合并到当前计数器，另一个计数器的状态和观测按其索引顺序加入字典。
+	 * 按样本顺序依次合并各分片的计数器，得到的计数和索引与串行计数相同
+	 * @param other	待合并的计数器
+	 */
+	public void merge(TransitionAndEmissionCounter other) {
+		if(other.order != order)
+			throw new IllegalArgumentException("模型阶数不一致： " + order + " != " + other.order);
+		
+		Dictionary otherDict = other.getDictionary();
+		for(int i = 0; i < otherDict.stateCount(); i++)
+			dict.add(otherDict.getState(i));
+		for(int i = 0; i < otherDict.observationCount(); i++)
+			dict.add(otherDict.getObservation(i));
+		
+		totalStatesCount += other.totalStatesCount;
+		totalStartStateCount += other.totalStartStateCount;
+		
+		for(Entry<State, Integer> entry : other.startStateCount.entrySet())
+			add(entry.getKey(), entry.getValue());
+		
+		for(Entry<StateSequence, Integer> entry : other.transitionCountMap.entrySet())
+			add(entry.getKey(), entry.getValue());
+		
+		for(Entry<State, EmissionCountEntry> entry : other.emissionCountMap.entrySet()) {
+			Iterator<Entry<Observation, Integer>> iterator = entry.getValue().entryIterator();
+			while(iterator.hasNext()) {
+				Entry<Observation, Integer> countEntry = iterator.next();
+				add(entry.getKey(), countEntry.getKey(), countEntry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * 从当前计数器中减去另一个计数器的计数，另一个计数器应是当前计数器所计样本的一部分（如交叉验证中留出的一折）。
+	 * 计数减为0的转移、发射和起始状态被删除，字典只保留仍有计数的状态和观测，其索引按原索引顺序重新分配
+	 * @param other	待减去的计数器
+	 */
+	public void subtract(TransitionAndEmissionCounter other) {
+		if(other.order != order)
+			throw new IllegalArgumentException("模型阶数不一致： " + order + " != " + other.order);
+		
+		//先检查计数是否足够，保证检查失败时当前计数器不被修改
+		if(other.totalStatesCount > totalStatesCount || other.totalStartStateCount > totalStartStateCount)
+			throw new IllegalArgumentException("待减去的计数器不是当前计数器的一部分");
+		for(Entry<State, Integer> entry : other.startStateCount.entrySet()) {
+			if(getStartStateCount(entry.getKey()) < entry.getValue())
+				throw new IllegalArgumentException("起始状态计数不足： " + entry.getKey());
+		}
+		for(Entry<StateSequence, Integer> entry : other.transitionCountMap.entrySet()) {
+			if(getSequenceCount(entry.getKey()) < entry.getValue())
+				throw new IllegalArgumentException("转移计数不足： " + entry.getKey());
+		}
+		for(Entry<State, EmissionCountEntry> entry : other.emissionCountMap.entrySet()) {
+			Iterator<Entry<Observation, Integer>> iterator = entry.getValue().entryIterator();
+			while(iterator.hasNext()) {
+				Entry<Observation, Integer> countEntry = iterator.next();
+				if(getEmissionCount(entry.getKey(), countEntry.getKey()) < countEntry.getValue())
+					throw new IllegalArgumentException("发射计数不足： " + entry.getKey() + " -> " + countEntry.getKey());
+			}
+		}
+		
+		totalStatesCount -= other.totalStatesCount;
+		totalStartStateCount -= other.totalStartStateCount;
+		
+		for(Entry<State, Integer> entry : other.startStateCount.entrySet())
+			subtract(entry.getKey(), entry.getValue());
+		
+		for(Entry<StateSequence, Integer> entry : other.transitionCountMap.entrySet())
+			subtract(entry.getKey(), entry.getValue());
+		
+		for(Entry<State, EmissionCountEntry> entry : other.emissionCountMap.entrySet()) {
+			Iterator<Entry<Observation, Integer>> iterator = entry.getValue().entryIterator();
+			while(iterator.hasNext()) {
+				Entry<Observation, Integer> countEntry = iterator.next();
+				subtract(entry.getKey(), countEntry.getKey(), countEntry.getValue());
+			}
+		}
+		
+		//重建字典，删除不再出现的状态和观测
+		Dictionary remaining = new Dictionary();
+		for(int i = 0; i < dict.stateCount(); i++) {
+			State state = dict.getState(i);
+			if(contain(state) || contain(new StateSequence(state)))
+				remaining.add(state);
+		}
+		for(int i = 0; i < dict.observationCount(); i++) {
+			Observation observation = dict.getObservation(i);
+			if(reverseEmissionCountMap.containsKey(observation))
+				remaining.add(observation);
+		}
+		dict = remaining;
+	}
+
+	/**
+	 * 增加count个转移（n元串）计数，用于从计数快照中恢复计数器
+	 * @param sequence	转移
+	 * @param count		增加的数量
+	 */
+	public void addTransitionCount(StateSequence sequence, int count) {
+		dict.add(sequence);
+		add(sequence, count);
+	}
+	
+	/**
+	 * 增加count个状态为state，观测为observation的发射计数，同时累加隐藏状态的总数量，用于从计数快照中恢复计数器
+	 * @param state			发射的状态
+	 * @param observation	发射的观测
+	 * @param count			增加的数量
+	 */
+	public void addEmissionCount(State state, Observation observation, int count) {
+		dict.add(state);
+		dict.add(observation);
+		totalStatesCount += count;
+		add(state, observation, count);
+	}
+	
+	/**
+	 * 增加count个出现在样本开始位置的隐藏状态计数，同时累加起始状态的总数量，用于从计数快照中恢复计数器
+	 * @param state	样本开始位置的隐藏状态
+	 * @param count	增加的数量
+	 */
+	public void addStartStateCount(State state, int count) {
+		dict.add(state);
+		totalStartStateCount += count;
+		add(state, count);
+	}
+
 	public HashMap<StateSequence, Integer> getTransitionCount() {
 		return transitionCountMap;
 	}
@@ -157,10 +406,19 @@ public class TransitionAndEmissionCounter {
 	 * @param state 隐藏状态序列的首部
 	 */
 	private void add(State state) {
+		add(state, 1);
+	}
+	
+	/**
+	 * 增加count个隐藏状态序列的首部
+	 * @param state 隐藏状态序列的首部
+	 * @param count	增加的数量
+	 */
+	private void add(State state, int count) {
 		if(startStateCount.containsKey(state))
-			startStateCount.put(state, startStateCount.get(state) + 1);
+			startStateCount.put(state, startStateCount.get(state) + count);
 		else 
-			startStateCount.put(state, 1);
+			startStateCount.put(state, count);
 	}
 	
 	/**
@@ -168,10 +426,19 @@ public class TransitionAndEmissionCounter {
 	 * @param sequence	发射
 	 */
 	private void add(StateSequence sequence) {
+		add(sequence, 1);
+	}
+	
+	/**
+	 * 增加count条转移，并统计历史转移的所有目标状态（统计n元串计数及其后缀）
+	 * @param sequence	转移
+	 * @param count		增加的数量
+	 */
+	private void add(StateSequence sequence, int count) {
 		if(transitionCountMap.containsKey(sequence)) 
-			transitionCountMap.put(sequence, transitionCountMap.get(sequence) + 1);
+			transitionCountMap.put(sequence, transitionCountMap.get(sequence) + count);
 		else
-			transitionCountMap.put(sequence, 1);
+			transitionCountMap.put(sequence, count);
 		
 		//统计后缀
 		if(sequence.length() > 1) {
@@ -189,19 +456,82 @@ public class TransitionAndEmissionCounter {
 		}
 	}
 	
+	/**
+	 * 减少count个隐藏状态序列的首部，数量减为0时删除
+	 * @param state 隐藏状态序列的首部
+	 * @param count	减少的数量
+	 */
+	private void subtract(State state, int count) {
+		int current = startStateCount.get(state);
+		if(current == count)
+			startStateCount.remove(state);
+		else
+			startStateCount.put(state, current - count);
+	}
+	
+	/**
+	 * 减少count条转移，数量减为0时删除该转移，并从其历史的后缀中删除目标状态
+	 * @param sequence	转移
+	 * @param count		减少的数量
+	 */
+	private void subtract(StateSequence sequence, int count) {
+		int current = transitionCountMap.get(sequence);
+		if(current > count) {
+			transitionCountMap.put(sequence, current - count);
+			return;
+		}
+		
+		transitionCountMap.remove(sequence);
+		if(sequence.length() > 1) {
+			StateSequence states = sequence.remove(sequence.length() - 1);
+			Set<State> set = stateSuffix.get(states);
+			set.remove(sequence.get(sequence.length() - 1));
+			if(set.isEmpty())
+				stateSuffix.remove(states);
+		}
+	}
+	
+	/**
+	 * 减少count个状态为state，观测为observation的发射，数量减为0时删除
+	 * @param state			发射的状态
+	 * @param observation	发射的观测
+	 * @param count			减少的数量
+	 */
+	private void subtract(State state, Observation observation, int count) {
+		EmissionCountEntry entry = emissionCountMap.get(state);
+		entry.subtract(observation, count);
+		if(entry.size() == 0)
+			emissionCountMap.remove(state);
+		
+		EmissionCounter revEntry = reverseEmissionCountMap.get(observation);
+		revEntry.subtract(state, count);
+		if(revEntry.size() == 0)
+			reverseEmissionCountMap.remove(observation);
+	}
+	
 	/**
 	 * 增加一个状态为state，观测为observation的发射
 	 * @param state			发射的状态
 	 * @param observation	发射的观测
 	 */
 	private void add(State state, Observation observation) {
+		add(state, observation, 1);
+	}
+	
+	/**
+	 * 增加count个状态为state，观测为observation的发射
+	 * @param state			发射的状态
+	 * @param observation	发射的观测
+	 * @param count			增加的数量
+	 */
+	private void add(State state, Observation observation, int count) {
 		EmissionCountEntry entry = null;
 		if(emissionCountMap.containsKey(state)) 
 			entry = emissionCountMap.get(state);
 		else 
 			entry = new EmissionCountEntry();
 		
-		entry.add(observation);
+		entry.add(observation, count);
 		emissionCountMap.put(state, entry);
 		
 		//反向发射
@@ -211,7 +541,7 @@ public class TransitionAndEmissionCounter {
 		else 
 			revEntry = new EmissionCounter();
 		
-		revEntry.add(state);
+		revEntry.add(state, count);
 		reverseEmissionCountMap.put(observation, revEntry);
 	}
 	
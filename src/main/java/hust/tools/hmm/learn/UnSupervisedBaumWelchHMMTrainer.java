@@ -1,10 +1,18 @@
 package hust.tools.hmm.learn;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import hust.tools.hmm.model.ARPAEntry;
 import hust.tools.hmm.model.BackwardAlgorithm;
@@ -14,16 +22,20 @@ import hust.tools.hmm.model.HMModel;
 import hust.tools.hmm.model.HMModelBasedBO;
 import hust.tools.hmm.stream.UnSupervisedHMMSample;
 import hust.tools.hmm.stream.UnSupervisedHMMSampleStream;
+import hust.tools.hmm.utils.CommonUtils;
 import hust.tools.hmm.utils.Dictionary;
 import hust.tools.hmm.utils.Observation;
 import hust.tools.hmm.utils.ObservationSequence;
 import hust.tools.hmm.utils.State;
 import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
 
 /**
  *<ul>
  *<li>Description: 基于Baum-Welch的非监督HMM训练器
  *<li>训练器需有初始模型，初始模型可以导入现有的模型，也可以随机生成
+ *<li>训练语料为多个相互独立的观测序列，E步按序列分片在多个线程中并行计算前向-后向概率，
+ *<li>每个线程累加各自的期望计数，合并后再进行M步
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2018年1月23日
@@ -32,213 +44,400 @@ import hust.tools.hmm.utils.StateSequence;
 public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrainer {
 
 	private final int DEFAULT_ITERATION = 100;
-	
+
 	private int iteration;
-	
+
 	private final double DELTA = 0.001;
-	
-	private ObservationSequence sequence;
-		
+
+	private final Observation UNKNOWN = new StringObservation("UNKNOWN");
+
+	/**
+	 * 相互独立的观测序列
+	 */
+	private List<ObservationSequence> sequences;
+
+	/**
+	 * E步的线程数
+	 */
+	private int threads;
+
 	public UnSupervisedBaumWelchHMMTrainer(HMModel initHMModel, int order, ObservationSequence sequence) {
+		this(initHMModel, order, Collections.singletonList(sequence));
+	}
+
+	public UnSupervisedBaumWelchHMMTrainer(HMModel initHMModel, int order, List<ObservationSequence> sequences) {
+		this(initHMModel, order, sequences, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param initHMModel	初始模型
+	 * @param order			模型阶数
+	 * @param sequences		相互独立的观测序列
+	 * @param threads		E步的线程数
+	 */
+	public UnSupervisedBaumWelchHMMTrainer(HMModel initHMModel, int order, List<ObservationSequence> sequences, int threads) {
 		super(initHMModel, order);
-		this.sequence = sequence;
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数应为正整数： threads = " + threads);
+
+		this.sequences = sequences;
+		this.threads = threads;
 		this.iteration = DEFAULT_ITERATION;
 	}
-	
+
 	public UnSupervisedBaumWelchHMMTrainer(UnSupervisedHMMSampleStream<?> sampleStream, Collection<State> states, int order, long seed) throws IOException {
+		this(sampleStream, states, order, seed, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 读取样本流中的观测序列，每个样本作为一个独立的序列，并随机生成初始模型
+	 * @param sampleStream	样本流
+	 * @param states		隐藏状态集合
+	 * @param order			模型阶数
+	 * @param seed			随机种子
+	 * @param threads		E步的线程数
+	 * @throws IOException
+	 */
+	public UnSupervisedBaumWelchHMMTrainer(UnSupervisedHMMSampleStream<?> sampleStream, Collection<State> states, int order, long seed, int threads) throws IOException {
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数应为正整数： threads = " + threads);
+
 		HashSet<Observation> observationSet = new HashSet<>();
-		sequence = new ObservationSequence();
+		sequences = new ArrayList<>();
 		UnSupervisedHMMSample sample = null;
 		while((sample = (UnSupervisedHMMSample) sampleStream.read()) != null) {
 			ObservationSequence observationSequence = sample.getObservationSequence();
-			sequence = 	sequence.add(observationSequence);
+			if(observationSequence.length() == 0)
+				continue;
+
+			sequences.add(observationSequence);
 			for(int i = 0; i < observationSequence.length(); i++)
 				observationSet.add(observationSequence.get(i));
 		}
 		sampleStream.close();
-		
+
 		HMModel initHMModel = initHMModel(states, observationSet, order, seed);
 		this.model = initHMModel;
 		this.order = order;
+		this.threads = threads;
 		this.iteration = DEFAULT_ITERATION;
 	}
-	
+
 	public UnSupervisedBaumWelchHMMTrainer(Collection<Observation> observationSet, Collection<State> states, int order, long seed) {
 		HMModel initHMModel = initHMModel(states, observationSet, order, seed);
 		this.model = initHMModel;
 		this.order = order;
+		this.sequences = new ArrayList<>();
+		this.threads = Runtime.getRuntime().availableProcessors();
 		this.iteration = DEFAULT_ITERATION;
 	}
 
+	/**
+	 * 设置最大迭代次数，两次迭代间观测序列的对数概率之差小于阈值时提前停止
+	 * @param iteration	最大迭代次数
+	 */
+	public void setIteration(int iteration) {
+		if(iteration < 1)
+			throw new IllegalArgumentException("迭代次数应为正整数： iteration = " + iteration);
+
+		this.iteration = iteration;
+	}
+
 	@Override
 	public HMModel train() {
-		double delta, logProbPre, logProbForward;
-		double[][] beta, alpha;
-		
-		delta = logProbPre = logProbForward = 0;
-		
-		BackwardAlgorithm backward = new BackwardAlgorithm(model, sequence);
-		beta = backward.getBeta();
-		ForwardAlgorithm forward = new ForwardAlgorithm(model, sequence);
-		alpha = forward.getAlpha();
-		logProbForward = Math.log10(forward.getProb());
-		logProbPre = logProbForward;
-		
-		Dictionary dict = model.getDict();
-		HashMap<State, Double> pi = model.getPi();
-		HashMap<StateSequence, ARPAEntry> matrixA = model.getTransitionMatrix();
-		HashMap<State, EmissionProbEntry> matrixB = model.getEmissionMatrix();
-		int N = model.statesCount();
-		int M = model.observationsCount();
-		int T = sequence.length();
-		
-		int[] observationsIndex = new int[sequence.length()];
-		for(int i = 0; i < observationsIndex.length; i++)
-			observationsIndex[i] = dict.getIndex(sequence.get(i));
-		
-		double[][][] xi = calcXi(model, sequence.length(), observationsIndex, alpha, beta);
-		double[][] gamma = calcGamma(model, sequence.length(), alpha, beta);
-		int currentIterator = 0;
-		do {
-			//重新估计模型的参数转移概率矩阵和发射概率矩阵
-			for(int i = 0; i < N; i++) {
-				pi.put(dict.getState(i), 0.001 + 0.999 * gamma[1][i]);
-
-				
-				double denominatorA = 0.0;
-				for(int t = 0; t < T - 1; t++)
-					denominatorA += gamma[t][i];
-
-				for(int j = 0; j < N; j++) {
-					double numeratorA = 0.0;
-					for (int t = 0; t < T - 1; t++) 
-						numeratorA += xi[t][i][j];
-					
-					StateSequence sequence = new StateSequence(new State[]{dict.getState(i), dict.getState(j)});
-					matrixA.put(sequence, new ARPAEntry(Math.log10(0.001 + 0.999 * numeratorA / denominatorA), 0));
-				}
+		if(sequences.isEmpty())
+			return model;
 
-				double denominatorB = denominatorA + gamma[T][i]; 
-				for(int k = 0; k < M; k++) {
-					double numeratorB = 0.0;
-					for (int t = 0; t < T; t++) {
-						if (observationsIndex[t] == k) 
-							numeratorB += gamma[t][i];
-					}
-					
-					State state = dict.getState(i);
-					Observation observation = dict.getObservation(k);
-					EmissionProbEntry entry = matrixB.get(state);
-					entry.put(observation, Math.log10(0.001 + 0.999 * numeratorB / denominatorB));
-					matrixB.put(state, entry);
-				}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, sequences.size()));
+		try {
+			double logProbPre = Double.NEGATIVE_INFINITY;
+			for(int currentIterator = 0; currentIterator < iteration; currentIterator++) {
+				ExpectedCounts counts = expectation(executor);
+
+				//两次迭代间观测序列的对数概率之差小于阈值时停止
+				double delta = counts.logProb - logProbPre;
+				if(delta < DELTA)
+					break;
+
+				logProbPre = counts.logProb;
+				model = maximization(counts);
 			}
-			
-			model = new HMModelBasedBO(order, dict, pi, matrixA, matrixB);
-			
-			backward = new BackwardAlgorithm(model, sequence);
-			beta = backward.getBeta();
-			forward = new ForwardAlgorithm(model, sequence);
-			alpha = forward.getAlpha();
-			
-			logProbForward = Math.log10(forward.getProb());
-			
-			xi = calcXi(model, sequence.length(), observationsIndex, alpha, beta);
-			gamma = calcGamma(model, sequence.length(), alpha, beta);
-
-			/* compute difference between log probability of 
-			   two iterations */
-			delta = logProbForward - logProbPre; 
-			logProbPre = logProbForward;
-			currentIterator++;
-		}while (delta < DELTA ||currentIterator > iteration);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Baum-Welch训练被中断", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Baum-Welch的E步计算失败", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
 
 		return model;
 	}
-	
+
 	/**
-	 * 给定模型和观测，计算在t时刻处于状态i的概率gamma[t][i]
-	 * gamma[t][i] = alpha[t][i] * beta[t][i] / denominator
-	 * @param model	HMM模型
-	 * @param T		观测序列长度
-	 * @param alpha	前向概率
-	 * @param beta	后向概率
-	 * @return		gamma
+	 * E步：将观测序列按顺序切分为连续的分片，每个分片在一个线程中累加期望计数，再按分片顺序合并
+	 * @param executor	线程池
+	 * @return			当前模型下所有观测序列的期望计数
+	 * @throws InterruptedException
+	 * @throws ExecutionException
 	 */
-	private double[][] calcGamma(HMModel model, int T, double[][] alpha, double[][] beta) {
-		double[][] gamma = new double[T][model.statesCount()];
-		
-		for(int t = 1; t <= T; t++) {
-			double denominator = 0.0;
-			for(int j = 1; j <= model.statesCount(); j++) {
-				gamma[t][j] = Math.pow(10, alpha[t][j]) * Math.pow(10, beta[t][j]);
-				denominator += gamma[t][j];
+	private ExpectedCounts expectation(ExecutorService executor) throws InterruptedException, ExecutionException {
+		final HMModel current = model;
+		int shards = Math.min(threads, sequences.size());
+		int shardSize = (sequences.size() + shards - 1) / shards;
+
+		List<Future<ExpectedCounts>> futures = new ArrayList<>();
+		for(int from = 0; from < sequences.size(); from += shardSize) {
+			final List<ObservationSequence> shard = sequences.subList(from, Math.min(from + shardSize, sequences.size()));
+			futures.add(executor.submit(new Callable<ExpectedCounts>() {
+				@Override
+				public ExpectedCounts call() {
+					ExpectedCounts counts = new ExpectedCounts(current);
+					for(ObservationSequence sequence : shard)
+						counts.add(current, sequence);
+
+					return counts;
+				}
+			}));
+		}
+
+		ExpectedCounts counts = futures.get(0).get();
+		for(int i = 1; i < futures.size(); i++)
+			counts.merge(futures.get(i).get());
+
+		return counts;
+	}
+
+	/**
+	 * M步：由期望计数重新估计初始概率、转移概率和发射概率，没有期望计数的状态使用均匀分布。
+	 * 发射概率只写出期望计数大于0的(状态, 观测)对，其余的发射由该状态发射UNKNOWN的概率（平滑的下限）表示
+	 * @param counts	期望计数
+	 * @return			重新估计的模型
+	 */
+	private HMModel maximization(ExpectedCounts counts) {
+		Dictionary dict = model.getDict();
+		HashMap<State, Double> pi = new HashMap<>();
+		HashMap<StateSequence, ARPAEntry> matrixA = new HashMap<>();
+		HashMap<State, EmissionProbEntry> matrixB = new HashMap<>();
+		int N = model.statesCount();
+		int M = model.observationsCount();
+
+		EmissionProbEntry[] entries = new EmissionProbEntry[N];
+		for(int i = 0; i < N; i++) {
+			State state = dict.getState(i);
+			pi.put(state, Math.log10(0.001 + 0.999 * counts.pi[i] / counts.sequences));
+
+			for(int j = 0; j < N; j++) {
+				double prob = counts.transitionDenominator[i] > 0 ? counts.transitionNumerator[i][j] / counts.transitionDenominator[i] : 1.0 / N;
+				StateSequence sequence = new StateSequence(new State[]{state, dict.getState(j)});
+				matrixA.put(sequence, new ARPAEntry(Math.log10(0.001 + 0.999 * prob), 0));
 			}
 
-			for(int i = 1; i <= model.statesCount(); i++) 
-				gamma[t][i] = gamma[t][i] / denominator;
+			entries[i] = new EmissionProbEntry();
+			if(counts.emissionDenominator[i] > 0)
+				entries[i].put(UNKNOWN, Math.log10(0.001));
+			else
+				entries[i].put(UNKNOWN, Math.log10(0.001 + 0.999 / M));
+			matrixB.put(state, entries[i]);
+		}
+
+		for(int k = 0; k < M; k++) {
+			double[] column = counts.emissionNumerator[k];
+			if(column == null)
+				continue;
+
+			Observation observation = dict.getObservation(k);
+			for(int i = 0; i < N; i++) {
+				if(column[i] > 0 && counts.emissionDenominator[i] > 0)
+					entries[i].put(observation, Math.log10(0.001 + 0.999 * column[i] / counts.emissionDenominator[i]));
+			}
 		}
-		
-		return gamma;
+
+		return new HMModelBasedBO(order, dict, pi, matrixA, matrixB);
 	}
-	
+
 	/**
-	 * 给定模型和观测，计算在t时刻处于状态i，且在t+1时刻处于状态j的概率xi[t][i][j]
-	 * xi[t][i][j] = alpha[t][i]*A[i][j]*B[j][t+1]*beta[j][t+1]/denominator
-	 * @param model			HMM模型
-	 * @param T				观测序列长度
-	 * @param observations	观测序列
-	 * @param alpha			前向概率
-	 * @param beta			后向概率
-	 * @return				xi
+	 * 一个线程累加的期望计数，各线程的期望计数按分片顺序合并。
+	 * 遍历观测序列时直接将gamma和xi累加到N×N的转移计数和按观测稀疏存放的发射计数中，所需内存与语料长度无关
 	 */
-	private double[][][] calcXi(HMModel model, int T, int[] observations, double[][] alpha, double[][] beta) {
-		double[][][] xi = new double[T][model.statesCount()][model.statesCount()];
-
-		for (int t = 1; t <= T - 1; t++) {
-			double denominator = 0.0;	
-			for (int i = 1; i <= model.statesCount(); i++) {
-				for (int j = 1; j <= model.statesCount(); j++) {
-					xi[t][i][j] = Math.pow(10, alpha[t][i]) * Math.pow(10, beta[t+1][j]) * Math.pow(10, model.transitionLogProb(i, j)) * Math.pow(10, model.emissionLogProb(j, observations[t+1]));
-					denominator += xi[t][i][j];
+	private static final class ExpectedCounts {
+
+		/**
+		 * 各状态出现在序列开始位置的期望次数
+		 */
+		private double[] pi;
+
+		/**
+		 * 由状态i转移到状态j的期望次数
+		 */
+		private double[][] transitionNumerator;
+
+		/**
+		 * 除最后时刻外处于状态i的期望次数，即由状态i转移出去的期望次数
+		 */
+		private double[] transitionDenominator;
+
+		/**
+		 * emissionNumerator[k][i]为状态i发射观测k的期望次数，未出现的观测为null
+		 */
+		private double[][] emissionNumerator;
+
+		/**
+		 * 处于状态i的期望次数
+		 */
+		private double[] emissionDenominator;
+
+		/**
+		 * 观测序列概率的自然对数之和
+		 */
+		private double logProb;
+
+		/**
+		 * 参与计数的观测序列数量
+		 */
+		private int sequences;
+
+		/**
+		 * 当前模型转移概率的自然对数，transition[i][j]
+		 */
+		private double[][] transition;
+
+		/**
+		 * 计算xi时存放t+1时刻各状态的发射概率与后向概率之和的缓冲区
+		 */
+		private double[] next;
+
+		public ExpectedCounts(HMModel model) {
+			int N = model.statesCount();
+			pi = new double[N];
+			transitionNumerator = new double[N][N];
+			transitionDenominator = new double[N];
+			emissionNumerator = new double[model.observationsCount()][];
+			emissionDenominator = new double[N];
+			next = new double[N];
+
+			transition = new double[N][N];
+			for(int i = 0; i < N; i++) {
+				for(int j = 0; j < N; j++)
+					transition[i][j] = CommonUtils.LN10 * model.transitionLogProb(i, j);
+			}
+		}
+
+		/**
+		 * 计算一个观测序列的前向、后向概率，并逐时刻累加其期望计数，当前模型下概率为0的序列被忽略
+		 * gamma[t][i] = alpha[t][i] * beta[t][i] / P(O)
+		 * xi[t][i][j] = alpha[t][i] * A[i][j] * B[j][t+1] * beta[t+1][j] / P(O)
+		 * @param model		当前模型
+		 * @param sequence	观测序列
+		 */
+		public void add(HMModel model, ObservationSequence sequence) {
+			int N = pi.length;
+			int T = sequence.length();
+			if(T == 0)
+				return;
+
+			ForwardAlgorithm forward = new ForwardAlgorithm(model, sequence);
+			double sequenceLogProb = forward.getLogProb();
+			if(Double.isInfinite(sequenceLogProb))
+				return;
+
+			double[][] alpha = forward.getAlpha();
+			double[][] beta = new BackwardAlgorithm(model, sequence).getBeta();
+
+			for(int t = 0; t < T; t++) {
+				int observation = model.getObservationIndex(sequence.get(t));
+				double[] column = null;
+				if(observation >= 0) {
+					column = emissionNumerator[observation];
+					if(column == null)
+						column = emissionNumerator[observation] = new double[N];
+				}
+
+				for(int i = 0; i < N; i++) {
+					double gamma = Math.exp(alpha[t][i] + beta[t][i] - sequenceLogProb);
+					emissionDenominator[i] += gamma;
+					if(column != null)
+						column[i] += gamma;
+
+					if(t == 0)
+						pi[i] += gamma;
+					if(t < T - 1)
+						transitionDenominator[i] += gamma;
+				}
+
+				if(t < T - 1) {
+					int nextObservation = model.getObservationIndex(sequence.get(t + 1));
+					for(int j = 0; j < N; j++)
+						next[j] = CommonUtils.LN10 * model.emissionLogProb(j, nextObservation) + beta[t + 1][j] - sequenceLogProb;
+
+					for(int i = 0; i < N; i++) {
+						for(int j = 0; j < N; j++)
+							transitionNumerator[i][j] += Math.exp(alpha[t][i] + transition[i][j] + next[j]);
+					}
 				}
 			}
-			
-			for(int i = 1; i <= model.statesCount(); i++) {
-				for(int j = 1; j <= model.statesCount(); j++) 
-					xi[t][i][j]  /= denominator;
+
+			logProb += sequenceLogProb;
+			sequences++;
+		}
+
+		/**
+		 * 将另一个线程的期望计数合并到当前期望计数
+		 * @param other	另一个线程的期望计数
+		 */
+		public void merge(ExpectedCounts other) {
+			for(int i = 0; i < pi.length; i++) {
+				pi[i] += other.pi[i];
+				transitionDenominator[i] += other.transitionDenominator[i];
+				emissionDenominator[i] += other.emissionDenominator[i];
+				for(int j = 0; j < pi.length; j++)
+					transitionNumerator[i][j] += other.transitionNumerator[i][j];
 			}
+
+			for(int k = 0; k < emissionNumerator.length; k++) {
+				double[] column = other.emissionNumerator[k];
+				if(column == null)
+					continue;
+
+				if(emissionNumerator[k] == null) {
+					emissionNumerator[k] = column;
+				}else {
+					for(int i = 0; i < column.length; i++)
+						emissionNumerator[k][i] += column[i];
+				}
+			}
+
+			logProb += other.logProb;
+			sequences += other.sequences;
 		}
-		
-		return xi;
 	}
-	
+
 	private HMModel initHMModel(Collection<State> states, Collection<Observation> observations, int order, long seed) {
 		Dictionary dict = new Dictionary();
 		HashMap<State, Double> pi = new HashMap<>();
 		HashMap<StateSequence, ARPAEntry> transitionMatrix = new HashMap<>();
 		HashMap<State, EmissionProbEntry> emissionMatrix = new HashMap<>();
-		
+
 		for(State state : states)
 			dict.add(state);
 		for(Observation observation : observations)
 			dict.add(observation);
-		
-		int M = observations.size();
-		int N = states.size();
 
-		
+		int M = dict.observationCount();
+		int N = dict.stateCount();
+
+
 		Random rand = new Random(seed);
 		double[] Pi = new double[N];
 		double[][] A = new double[N][N];
 		double[][] B = new double[N][M];
-		
+
 		double sumPi = 0.0;
 		for(int i = 0; i < N; i++) {
 			//为初始概率矩阵随机赋值
 			Pi[i] = rand.nextDouble();
 			sumPi += Pi[i];
-			
+
 			//为转移概率矩阵随机赋值
 			double sumA = 0.0;
 			for(int j = 0; j < N; j++) {
@@ -248,9 +447,9 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 			//转移概率归一化
 			for(int j = 0; j < N; j++) {
 				State[] trans = new State[]{dict.getState(i), dict.getState(j)};
-				transitionMatrix.put(new StateSequence(trans), new ARPAEntry(A[i][j] /= sumA, 0));
+				transitionMatrix.put(new StateSequence(trans), new ARPAEntry(Math.log10(A[i][j] /= sumA), 0));
 			}
-			
+
 			//为发射概率矩阵随机赋值
 			double sumB = 0.0;
 			for(int j = 0; j < M; j++) {
@@ -262,20 +461,20 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 				State state = dict.getState(i);
 				Observation observation = dict.getObservation(j);
 				EmissionProbEntry entry = null;
-				if(emissionMatrix.containsKey(state)) 
+				if(emissionMatrix.containsKey(state))
 					entry = emissionMatrix.get(state);
 				else
 					entry = new EmissionProbEntry();
-				
-				entry.put(observation, B[i][j] /= sumB);
+
+				entry.put(observation, Math.log10(B[i][j] /= sumB));
 				emissionMatrix.put(state, entry);
 			}
 		}
-		
+
 		//初始转移概率归一化
-		for(int i = 0; i < M; i++)
+		for(int i = 0; i < N; i++)
 			pi.put(dict.getState(i), Math.log10(Pi[i] /= sumPi));
-		
+
 		return new HMModelBasedBO(order, dict, pi, transitionMatrix, emissionMatrix);
 	}
-}
\ No newline at end of file
+}
@@ -1,10 +1,12 @@
 package hust.tools.hmm.model;
 
+import hust.tools.hmm.utils.CommonUtils;
 import hust.tools.hmm.utils.ObservationSequence;
 
 /**
  *<ul>
  *<li>Description: 后向算法，给定HMM模型参数，计算观测序列概率  
+ *<li>后向概率在自然对数空间中用log-sum-exp递推，长序列不会下溢
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2018年1月3日
@@ -13,16 +15,16 @@ import hust.tools.hmm.utils.ObservationSequence;
 public class BackwardAlgorithm {
 	
 	/**
-	 * beta[t][i] = P(O(t+1), O(t+2),..., O(T)|i(t) = S(i), HMM)
+	 * beta[t][i] = P(O(t+1), O(t+2),..., O(T)|i(t) = S(i), HMM)取自然对数
 	 */
 	private double[][] beta = null;
 	
 	private HMModel model;
 	
 	/**
-	 * 观测序列概率
+	 * 观测序列概率的自然对数
 	 */
-	protected double prob;
+	protected double logProb;
 
 	public BackwardAlgorithm(HMModel model, ObservationSequence observations) {
 		if(observations.length() == 0)
@@ -33,74 +35,88 @@ public class BackwardAlgorithm {
 	}
 
 	private void computeBeta(ObservationSequence observations) {
+		int stateNum = model.statesCount();
+		int[] observationsIndex = new int[observations.length()];
+		for(int t = 0; t < observationsIndex.length; t++)
+			observationsIndex[t] = model.getObservationIndex(observations.get(t));
+		
 		//初始化
-		int stateNum = model.getStates().length;
-		initBeta(observations, stateNum);
+		initBeta(observationsIndex.length, stateNum);
 		
 		//递推
-		if(observations.length() > 1) {
-			for(int t = observations.length() - 2; t >= 0; t--)
-				for(int i = 0; i < stateNum; i++) 
-					betaStep(observations, t, i);
+		double[] terms = new double[stateNum];
+		for(int t = observationsIndex.length - 2; t >= 0; t--) {
+			double[] emissions = model.emissionLogProbs(observationsIndex[t + 1]);
+			for(int i = 0; i < stateNum; i++) 
+				betaStep(emissions, t, i, terms);
 		}
 		
 		//终止
-		int index = model.getObservationIndex(observations.get(0));
-		computeObservationProb(index);
+		computeObservationProb(observationsIndex[0], terms);
 	}
 	
 	/**
 	 * 初始化后向概率
-	 * @param stateCount	隐藏状态数量
 	 * @param T			 	观测序列长度
+	 * @param count			隐藏状态数量
 	 */
-	private void initBeta(ObservationSequence observations, int count) {
-		beta = new double[observations.length()][count];
+	private void initBeta(int T, int count) {
+		beta = new double[T][count];
 		
 		for(int i = 0; i < count; i++)
-			beta[observations.length() - 1][i] = 0;
+			beta[T - 1][i] = 0;
 	}
 	
 	/**
 	 * 计算观测序列第t时刻第i个状态的后向概率
-	 * @param model			HMM模型
-	 * @param observations	观测序列
+	 * @param emissions	各状态发射t+1时刻观测的概率的对数
 	 * @param t				当前时刻
 	 * @param i				状态索引
+	 * @param terms			存放求和项的缓冲区
 	 */
-	private void betaStep(ObservationSequence observations, int t, int i) {
-		double sum = 0.0;
-		int o = model.getObservationIndex(observations.get(t + 1));
-
-		for(int j = 0; j < model.statesCount(); j++)
-			sum += Math.pow(10, model.transitionLogProb(i, j) + model.emissionLogProb(j, o) + beta[t + 1][j]);
+	private void betaStep(double[] emissions, int t, int i, double[] terms) {
+		int N = terms.length;
+		for(int j = 0; j < N; j++)
+			terms[j] = CommonUtils.LN10 * (model.transitionLogProb(i, j) + emissions[j]) + beta[t + 1][j];
 
-		beta[t][i] = Math.log10(sum);
+		beta[t][i] = CommonUtils.logSumExp(terms, N);
 	}
 	
 	/**
 	 * 计算观测序列的概率
-	 * @param model			HMM模型
-	 * @param index			第一个观测状态索引
+	 * @param observation	第一个观测状态索引
+	 * @param terms			存放求和项的缓冲区
 	 */
-	private void computeObservationProb(int index) {
-		for(int i = 0; i < model.statesCount(); i++)
-			prob += Math.pow(10, model.getLogPi(i) + model.emissionLogProb(i, index) + beta[0][i]);
+	private void computeObservationProb(int observation, double[] terms) {
+		int N = terms.length;
+		double[] emissions = model.emissionLogProbs(observation);
+		for(int i = 0; i < N; i++)
+			terms[i] = CommonUtils.LN10 * (model.getLogPi(i) + emissions[i]) + beta[0][i];
+		
+		logProb = CommonUtils.logSumExp(terms, N);
 	}
 	
 	/**
-	 * 返回观测序列的概率
+	 * 返回观测序列的概率，长序列的概率可能下溢为0，此时应使用getLogProb()
 	 * @return	观测序列的概率
 	 */
 	public double getProb() {
-		return prob;
+		return Math.exp(logProb);
+	}
+	
+	/**
+	 * 返回观测序列概率的自然对数
+	 * @return	观测序列概率的自然对数
+	 */
+	public double getLogProb() {
+		return logProb;
 	}
 
 	/**
-	 * 返回t时刻i状态的后向概率
+	 * 返回t时刻i状态的后向概率的自然对数
 	 * @param t	观测序列的时刻
 	 * @param i	隐藏状态的索引
-	 * @return	后向概率
+	 * @return	后向概率的自然对数
 	 */
 	public double getBeta(int t, int i) {
 		if(beta == null)
@@ -0,0 +1,227 @@
+package hust.tools.hmm.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 带解码结果缓存的HMM，缓存观测序列（及阶数）到最优隐藏序列的映射，命中时不再解码
+ *<li>缓存按最近最少使用的顺序淘汰，条目数量和总权重（观测序列长度之和）均有上限
+ *<li>更换HMM时清空缓存，替换前开始、替换后完成的解码结果不会写入缓存
+ *<li>同一实例可被多个线程共享，解码在锁外进行，被缓存的隐藏序列由所有调用者共享，不应被修改
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class CachedHMM implements HMM {
+
+	/**
+	 * 被缓存的HMM
+	 */
+	private volatile HMM hmm;
+
+	/**
+	 * 按访问顺序排列的缓存，最早的条目最久未被访问
+	 */
+	private final LinkedHashMap<Key, StateSequence> cache;
+
+	/**
+	 * 缓存条目数量的上限
+	 */
+	private final int maxEntries;
+
+	/**
+	 * 缓存总权重的上限
+	 */
+	private final long maxWeight;
+
+	/**
+	 * 缓存的总权重
+	 */
+	private long weight;
+
+	/**
+	 * 更换HMM或清空缓存的次数，用于丢弃过期的解码结果
+	 */
+	private long generation;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * @param hmm			被缓存的HMM
+	 * @param maxEntries	缓存条目数量的上限
+	 */
+	public CachedHMM(HMM hmm, int maxEntries) {
+		this(hmm, maxEntries, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param hmm			被缓存的HMM
+	 * @param maxEntries	缓存条目数量的上限
+	 * @param maxWeight		缓存总权重（观测序列长度之和）的上限
+	 */
+	public CachedHMM(HMM hmm, int maxEntries, long maxWeight) {
+		if(maxEntries < 1)
+			throw new IllegalArgumentException("缓存大小应为正整数： maxEntries = " + maxEntries);
+		if(maxWeight < 1)
+			throw new IllegalArgumentException("缓存权重应为正整数： maxWeight = " + maxWeight);
+
+		this.hmm = hmm;
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		cache = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	@Override
+	public StateSequence bestStateSeqence(ObservationSequence observations, int order) {
+		Key key = new Key(observations, order);
+		HMM current;
+		long start;
+		synchronized (this) {
+			StateSequence cached = cache.get(key);
+			if(cached != null) {
+				hits++;
+				return cached;
+			}
+
+			misses++;
+			current = hmm;
+			start = generation;
+		}
+
+		StateSequence result = current.bestStateSeqence(observations, order);
+
+		synchronized (this) {
+			if(start == generation && key.weight() <= maxWeight && !cache.containsKey(key)) {
+				cache.put(key, result);
+				weight += key.weight();
+				evict();
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public double getProb(ObservationSequence observations, int order) {
+		return hmm.getProb(observations, order);
+	}
+
+	@Override
+	public double getProb(ObservationSequence observations, StateSequence states, int order) {
+		return hmm.getProb(observations, states, order);
+	}
+
+	/**
+	 * 更换被缓存的HMM（如模型更新后），并清空缓存
+	 * @param hmm	新的HMM
+	 */
+	public synchronized void setHMM(HMM hmm) {
+		this.hmm = hmm;
+		invalidate();
+	}
+
+	public HMM getHMM() {
+		return hmm;
+	}
+
+	/**
+	 * 清空缓存，统计信息保留
+	 */
+	public synchronized void invalidate() {
+		cache.clear();
+		weight = 0;
+		generation++;
+	}
+
+	/**
+	 * 淘汰最久未被访问的条目，直到条目数量和总权重都不超过上限
+	 */
+	private void evict() {
+		Iterator<Entry<Key, StateSequence>> iterator = cache.entrySet().iterator();
+		while(cache.size() > maxEntries || weight > maxWeight) {
+			Key eldest = iterator.next().getKey();
+			iterator.remove();
+			weight -= eldest.weight();
+			evictions++;
+		}
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * 返回缓存的命中率
+	 * @return	命中率，没有请求时为0
+	 */
+	public synchronized double getHitRate() {
+		long requests = hits + misses;
+
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	/**
+	 * 缓存的键，保存观测序列的副本，避免调用者修改观测数组后影响缓存
+	 */
+	private static final class Key {
+
+		private final ObservationSequence observations;
+
+		private final int order;
+
+		private final int hash;
+
+		private Key(ObservationSequence observations, int order) {
+			this.observations = observations.length() == 0 ? observations : new ObservationSequence(observations.toArray().clone());
+			this.order = order;
+			this.hash = 31 * this.observations.hashCode() + order;
+		}
+
+		private int weight() {
+			return Math.max(1, observations.length());
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+
+			return order == other.order && observations.equals(other.observations);
+		}
+	}
+}
@@ -1,10 +1,15 @@
 package hust.tools.hmm.model;
 
+import java.util.Arrays;
+
+import hust.tools.hmm.utils.CommonUtils;
 import hust.tools.hmm.utils.ObservationSequence;
 
 /**
  *<ul>
  *<li>Description: 前向算法，给定HMM模型参数，计算观测序列概率
+ *<li>前向概率在自然对数空间中用log-sum-exp递推，长序列不会下溢
+ *<li>给定标注词典时，每个时刻只计算该时刻观测允许的隐藏状态，其余状态的前向概率为0
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2018年1月3日
@@ -13,92 +18,126 @@ import hust.tools.hmm.utils.ObservationSequence;
 public class ForwardAlgorithm {
 
 	/**
-	 * alpha[t][i] = P(O(1), O(2),..., O(t), i(t) = S(i) | HMM)取对数
+	 * alpha[t][i] = P(O(1), O(2),..., O(t), i(t) = S(i) | HMM)取自然对数
 	 */
 	private double[][] alpha = null;
 	
 	private HMModel model;
 	
 	/**
-	 * 观测序列概率
+	 * 标注词典，为null时每个时刻计算全部隐藏状态
 	 */
-	private double prob;
+	private TagDictionary tagDictionary;
+	
+	/**
+	 * 观测序列概率的自然对数
+	 */
+	private double logProb;
 	
 	public ForwardAlgorithm(HMModel model, ObservationSequence observations) {
+		this(model, observations, null);
+	}
+	
+	/**
+	 * @param model			HMM模型
+	 * @param observations	观测序列
+	 * @param tagDictionary	标注词典，为null时不限制隐藏状态
+	 */
+	public ForwardAlgorithm(HMModel model, ObservationSequence observations, TagDictionary tagDictionary) {
 		if(observations.length() == 0)
 			throw new IllegalArgumentException("观测序列不能为空");
 		
 		this.model = model;
+		this.tagDictionary = tagDictionary;
 		computeAlpha(observations);
 	}
 
 	private void computeAlpha(ObservationSequence observations) {
-		//初始化
 		int stateNum = model.statesCount();
-		initAlpha(observations, stateNum);
+		int[] observationsIndex = new int[observations.length()];
+		for(int t = 0; t < observationsIndex.length; t++)
+			observationsIndex[t] = model.getObservationIndex(observations.get(t));
+		
+		int[] allStates = new int[stateNum];
+		for(int i = 0; i < stateNum; i++)
+			allStates[i] = i;
+		
+		//初始化
+		int[] prevStates = tagDictionary == null ? allStates : tagDictionary.getStates(observationsIndex[0]);
+		initAlpha(observationsIndex, stateNum, prevStates);
 		
 		//递推
-		if(observations.length() > 1) {
-			for(int t = 1; t < observations.length(); t++)				
-				for(int j = 0; j < stateNum; j++)
-					alphaStep(observations, t, j);
+		double[] terms = new double[stateNum];
+		for(int t = 1; t < observationsIndex.length; t++) {
+			int[] states = tagDictionary == null ? allStates : tagDictionary.getStates(observationsIndex[t]);
+			if(states.length < stateNum)
+				Arrays.fill(alpha[t], Double.NEGATIVE_INFINITY);
+			
+			double[] emissions = model.emissionLogProbs(observationsIndex[t]);
+			for(int j : states)
+				alphaStep(emissions, t, j, prevStates, terms);
+			prevStates = states;
 		}
 		
 		//终止
-		computeObservationProb(observations.length(), stateNum);
+		logProb = CommonUtils.logSumExp(alpha[observationsIndex.length - 1], stateNum);
 	}
 	
 	/**
 	 * 对前向概率进行初始化：alpha[0][i] = pi(i) * b[i][0];
-	 * @param observations
+	 * @param observations	观测序列的索引
+	 * @param count			隐藏状态的个数
+	 * @param states		0时刻允许的隐藏状态
 	 */
-	private void initAlpha(ObservationSequence observations, int count) {
-		alpha = new double[observations.length()][count];
+	private void initAlpha(int[] observations, int count, int[] states) {
+		alpha = new double[observations.length][count];
+		if(states.length < count)
+			Arrays.fill(alpha[0], Double.NEGATIVE_INFINITY);
 		
-		int firstObservation = model.getObservationIndex(observations.get(0));
-		for(int i = 0; i < count; i++)
-			alpha[0][i] = model.getLogPi(i) + model.emissionLogProb(i, firstObservation);
+		double[] emissions = model.emissionLogProbs(observations[0]);
+		for(int i : states)
+			alpha[0][i] = CommonUtils.LN10 * (model.getLogPi(i) + emissions[i]);
 	}
 	
 	/**
 	 * 计算观测序列第t时刻第j个状态的前向概率
-	 * @param observations	观测序列
+	 * @param emissions	各状态发射t时刻观测的概率的对数
 	 * @param t				当前时刻
 	 * @param j				状态索引
+	 * @param prevStates	t-1时刻允许的隐藏状态
+	 * @param terms			存放求和项的缓冲区
 	 */
-	private void alphaStep(ObservationSequence observations, int t, int j) {
-		double sum = 0;
-		
-		for(int i = 0; i < model.statesCount(); i++)
-			sum += Math.pow(10, alpha[t - 1][i] + model.transitionLogProb(i, j));
+	private void alphaStep(double[] emissions, int t, int j, int[] prevStates, double[] terms) {
+		int N = prevStates.length;
+		for(int n = 0; n < N; n++) {
+			int i = prevStates[n];
+			terms[n] = alpha[t - 1][i] + CommonUtils.LN10 * model.transitionLogProb(i, j);
+		}
 		
-		int observation = model.getObservationIndex(observations.get(t));//观测状态的索引
-		alpha[t][j] = Math.log10(sum) + model.emissionLogProb(j, observation);
+		alpha[t][j] = CommonUtils.logSumExp(terms, N) + CommonUtils.LN10 * emissions[j];
 	}
 	
 	/**
-	 * 计算观测序列的概率
-	 * @param T				观测序列的长度
-	 * @param stateCount	隐藏状态的个数
+	 * 返回观测序列的概率，长序列的概率可能下溢为0，此时应使用getLogProb()
+	 * @return	观测序列的概率
 	 */
-	private void computeObservationProb(int T, int stateCount) {
-		for(int i = 0; i < stateCount; i++)
-			prob += Math.pow(10, alpha[T - 1][i]);
+	public double getProb() {
+		return Math.exp(logProb);
 	}
 	
 	/**
-	 * 返回观测序列的概率
-	 * @return	观测序列的概率
+	 * 返回观测序列概率的自然对数
+	 * @return	观测序列概率的自然对数
 	 */
-	public double getProb() {
-		return prob;
+	public double getLogProb() {
+		return logProb;
 	}
 
 	/**
-	 * 返回t时刻i状态的前向概率
+	 * 返回t时刻i状态的前向概率的自然对数
 	 * @param t	观测序列的时刻
 	 * @param i	隐藏状态的索引
-	 * @return	前向概率
+	 * @return	前向概率的自然对数
 	 */
 	public double getAlpha(int t, int i) {
 		if(alpha == null)
@@ -0,0 +1,259 @@
+package hust.tools.hmm.model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.StateSequence;
+import opennlp.tools.util.ObjectStream;
+
+/**
+ *<ul>
+ *<li>Description: 批量解码器，在线程池中并行解码多个观测序列，返回结果的顺序与输入顺序一致
+ *<li>所有线程共享同一个HMM，HMM的解码方法须可被多个线程同时调用（如HMMWithViterbi）
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMMBatchDecoder {
+
+	/**
+	 * 默认每个任务解码的观测序列数量
+	 */
+	private static final int DEFAULT_BATCH_SIZE = 64;
+
+	/**
+	 * 共享的HMM
+	 */
+	private HMM hmm;
+
+	private ExecutorService executor;
+
+	/**
+	 * 线程池是否由解码器创建，由解码器创建的线程池在close时关闭
+	 */
+	private boolean ownExecutor;
+
+	/**
+	 * 每个任务解码的观测序列数量
+	 */
+	private int batchSize;
+
+	/**
+	 * 从流中读取时，同时等待执行的最大任务数
+	 */
+	private int maxPendingTasks;
+
+	/**
+	 * 使用与处理器数量相同线程数的线程池
+	 * @param hmm	共享的HMM
+	 */
+	public HMMBatchDecoder(HMM hmm) {
+		this(hmm, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 使用给定线程数的线程池，线程池在close时关闭
+	 * @param hmm		共享的HMM
+	 * @param threads	线程数
+	 */
+	public HMMBatchDecoder(HMM hmm, int threads) {
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数应为正整数： threads = " + threads);
+
+		this.hmm = hmm;
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.ownExecutor = true;
+		this.batchSize = DEFAULT_BATCH_SIZE;
+		this.maxPendingTasks = threads * 4;
+	}
+
+	/**
+	 * 使用外部线程池，线程池由调用者负责关闭
+	 * @param hmm		共享的HMM
+	 * @param executor	线程池
+	 * @param batchSize	每个任务解码的观测序列数量
+	 */
+	public HMMBatchDecoder(HMM hmm, ExecutorService executor, int batchSize) {
+		if(batchSize < 1)
+			throw new IllegalArgumentException("批大小应为正整数： batchSize = " + batchSize);
+
+		this.hmm = hmm;
+		this.executor = executor;
+		this.ownExecutor = false;
+		this.batchSize = batchSize;
+		this.maxPendingTasks = Runtime.getRuntime().availableProcessors() * 4;
+	}
+
+	/**
+	 * 并行解码给定的观测序列
+	 * @param observations	观测序列
+	 * @param order			模型阶数
+	 * @return				与输入顺序一致的最优隐藏序列
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public List<StateSequence> bestStateSeqences(List<ObservationSequence> observations, int order) throws InterruptedException, ExecutionException {
+		List<Future<List<StateSequence>>> futures = new ArrayList<>();
+		for(int from = 0; from < observations.size(); from += batchSize) {
+			int to = Math.min(from + batchSize, observations.size());
+			futures.add(executor.submit(new DecodeTask(observations.subList(from, to), order)));
+		}
+
+		List<StateSequence> result = new ArrayList<>(observations.size());
+		try {
+			for(Future<List<StateSequence>> future : futures)
+				result.addAll(future.get());
+		} finally {
+			//出错或被中断时取消其余的任务，正常结束时任务均已完成，取消无效果
+			for(Future<List<StateSequence>> future : futures)
+				future.cancel(true);
+		}
+
+		return result;
+	}
+
+	/**
+	 * 并行解码流中的观测序列，返回按输入顺序读取结果的流，读取结果时才从输入流中读取并提交任务，未完成的任务数量有上限
+	 * <li>返回的流不在内存中累积结果，解码出错时read抛出IOException并取消其余的任务，关闭返回的流时取消其余的任务并关闭输入流
+	 * @param stream	观测序列流
+	 * @param order		模型阶数
+	 * @return			与输入顺序一致的最优隐藏序列流
+	 */
+	public ObjectStream<StateSequence> bestStateSeqences(ObjectStream<ObservationSequence> stream, int order) {
+		return new DecodedStream(stream, order);
+	}
+
+	/**
+	 * 关闭由解码器创建的线程池
+	 */
+	public void close() {
+		if(ownExecutor)
+			executor.shutdown();
+	}
+
+	/**
+	 * 按输入顺序返回解码结果的流
+	 */
+	private class DecodedStream implements ObjectStream<StateSequence> {
+
+		private ObjectStream<ObservationSequence> stream;
+
+		private int order;
+
+		/**
+		 * 已提交、结果尚未取出的任务，按输入顺序排列
+		 */
+		private Queue<Future<List<StateSequence>>> pending = new ArrayDeque<>();
+
+		/**
+		 * 当前任务的结果中尚未返回的部分
+		 */
+		private Iterator<StateSequence> current;
+
+		/**
+		 * 输入流是否已读完
+		 */
+		private boolean exhausted;
+
+		public DecodedStream(ObjectStream<ObservationSequence> stream, int order) {
+			this.stream = stream;
+			this.order = order;
+		}
+
+		@Override
+		public StateSequence read() throws IOException {
+			while(current == null || !current.hasNext()) {
+				fill();
+				if(pending.isEmpty())
+					return null;
+
+				try {
+					current = pending.remove().get().iterator();
+				} catch (InterruptedException e) {
+					cancel();
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("批量解码被中断");
+				} catch (ExecutionException e) {
+					cancel();
+					throw new IOException("批量解码失败", e.getCause());
+				}
+			}
+
+			return current.next();
+		}
+
+		/**
+		 * 从输入流读取观测序列并提交任务，直到未完成的任务数量达到上限或输入流读完
+		 */
+		private void fill() throws IOException {
+			while(!exhausted && pending.size() < maxPendingTasks) {
+				List<ObservationSequence> batch = new ArrayList<>(batchSize);
+				ObservationSequence observations = null;
+				while(batch.size() < batchSize && (observations = stream.read()) != null)
+					batch.add(observations);
+
+				if(observations == null)
+					exhausted = true;
+				if(batch.size() > 0)
+					pending.add(executor.submit(new DecodeTask(batch, order)));
+			}
+		}
+
+		/**
+		 * 取消其余的任务
+		 */
+		private void cancel() {
+			while(!pending.isEmpty())
+				pending.remove().cancel(true);
+			current = null;
+			exhausted = true;
+		}
+
+		@Override
+		public void reset() throws IOException, UnsupportedOperationException {
+			throw new UnsupportedOperationException("解码结果流不支持重置");
+		}
+
+		@Override
+		public void close() throws IOException {
+			cancel();
+			stream.close();
+		}
+	}
+
+	/**
+	 * 解码一批观测序列的任务
+	 */
+	private class DecodeTask implements Callable<List<StateSequence>> {
+
+		private List<ObservationSequence> batch;
+
+		private int order;
+
+		public DecodeTask(List<ObservationSequence> batch, int order) {
+			this.batch = batch;
+			this.order = order;
+		}
+
+		@Override
+		public List<StateSequence> call() {
+			List<StateSequence> result = new ArrayList<>(batch.size());
+			for(ObservationSequence observations : batch)
+				result.add(hmm.bestStateSeqence(observations, order));
+
+			return result;
+		}
+	}
+}
@@ -1,11 +1,11 @@
 package hust.tools.hmm.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.PriorityQueue;
-import java.util.Queue;
 
-import hust.tools.hmm.utils.CommonUtils;
 import hust.tools.hmm.utils.ObservationSequence;
 import hust.tools.hmm.utils.State;
 import hust.tools.hmm.utils.StateSequence;
@@ -13,103 +13,248 @@ import hust.tools.hmm.utils.StateSequence;
 /**
  *<ul>
  *<li>Description: 基于beamSearch和前向算法的的HMM，用于1阶HMM
+ *<li>order为转移n元串的长度，t时刻的转移以前order-1个隐藏状态为历史，序列开始处历史取已有的全部状态
+ *<li>每个候选路径保存其得分的对数和指向前一个候选的指针，扩展一个候选只需计算一次转移和发射，beam由有界的小顶堆维护
+ *<li>给定标注词典时，每个时刻只用该时刻观测允许的隐藏状态扩展候选
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2018年1月15日
  *</ul>
  */
 public class HMMWithBeamSearch implements HMM {
-		
+
 	/**
 	 * HMM模型
 	 */
 	private HMModel model;
-	
+
+	/**
+	 * beam的大小，为0时使用隐藏状态的数量
+	 */
+	private int beamSize;
+
+	/**
+	 * 标注词典，为null时每个时刻扩展全部隐藏状态
+	 */
+	private TagDictionary tagDictionary;
+
+	/**
+	 * 全部隐藏状态的索引
+	 */
+	private int[] allStates;
+
+	/**
+	 * 得分低的候选排在前面，用于维护有界的beam
+	 */
+	private static final Comparator<Hypothesis> ASCENDING = new Comparator<Hypothesis>() {
+		@Override
+		public int compare(Hypothesis o1, Hypothesis o2) {
+			return Double.compare(o1.logScore, o2.logScore);
+		}
+	};
+
 	public HMMWithBeamSearch(HMModel model) {
+		this(model, 0);
+	}
+
+	/**
+	 * @param model		HMM模型
+	 * @param beamSize	beam的大小，为0时使用隐藏状态的数量
+	 */
+	public HMMWithBeamSearch(HMModel model, int beamSize) {
+		this(model, beamSize, null);
+	}
+
+	/**
+	 * @param model			HMM模型
+	 * @param beamSize		beam的大小，为0时使用隐藏状态的数量
+	 * @param tagDictionary	标注词典，为null时不限制隐藏状态
+	 */
+	public HMMWithBeamSearch(HMModel model, int beamSize, TagDictionary tagDictionary) {
+		if(beamSize < 0)
+			throw new IllegalArgumentException("beam大小不能为负数： beamSize = " + beamSize);
+
 		this.model = model;
+		this.beamSize = beamSize;
+		this.tagDictionary = tagDictionary;
+
+		allStates = new int[model.statesCount()];
+		for(int i = 0; i < allStates.length; i++)
+			allStates[i] = i;
 	}
 
 	@Override
 	public double getProb(ObservationSequence observations, StateSequence states, int order) {
 		if(observations.length() == 0 || states.length() == 0)
 			throw new IllegalArgumentException("状态序列或观测序列不能为空");
-		
+
 		double logProb = model.getLogPi(states.get(0)) + model.emissionLogProb(states.get(0), observations.get(0));
-		List<StateSequence> list = CommonUtils.spilt(states, order);
-		for(int i = 1; i < list.size(); i++) {
-			StateSequence transition = list.get(i);
-			State target = states.get(i);
-			logProb += model.transitionLogProb(transition.remove(transition.length() - 1), target) +
-					model.emissionLogProb(target, observations.get(i));
+		for(int i = 1; i < states.length(); i++) {
+			int from = Math.max(0, i - order + 1);
+			State[] history = new State[i - from];
+			for(int h = from; h < i; h++)
+				history[h - from] = states.get(h);
+
+			logProb += model.transitionLogProb(new StateSequence(history), states.get(i)) +
+					model.emissionLogProb(states.get(i), observations.get(i));
 		}
-		
+
 		return Math.pow(10, logProb);
 	}
 
 	@Override
 	public double getProb(ObservationSequence observations, int order) {
-		ForwardAlgorithm algorithm = new ForwardAlgorithm(model, observations);
-		
+		ForwardAlgorithm algorithm = new ForwardAlgorithm(model, observations, tagDictionary);
+
 		return algorithm.getProb();
 	}
-	
+
 	@Override
 	public StateSequence bestStateSeqence(ObservationSequence observationSequence, int order) {
-		int beamSize = model.statesCount();
-//		System.out.println("beamSize = " + beamSize);
-		
-		List<StateSequence> bestK = beamSearch(observationSequence, beamSize, order, 1);
-		
+		int size = beamSize == 0 ? model.statesCount() : beamSize;
+
+		List<StateSequence> bestK = beamSearch(observationSequence, size, order, 1);
+
 		return bestK.get(0);
 	}
 
 	/**
-	 * viterbi算法计算给定观测序列的最优隐藏序列
+	 * beamSearch计算给定观测序列得分最高的k个隐藏序列
 	 * @param observationSequence	给定的观测序列
+	 * @param beamSize				beam的大小
+	 * @param order					转移n元串的长度
+	 * @param k						返回的隐藏序列数量
+	 * @return						按得分从高到低排列的隐藏序列
 	 */
 	private List<StateSequence> beamSearch(ObservationSequence observationSequence, int beamSize, int order, int k) {
-		Queue<StateSequenceWithScore> prev = new PriorityQueue<>(beamSize);
-	    Queue<StateSequenceWithScore> next = new PriorityQueue<>(beamSize);
-	    Queue<StateSequenceWithScore> tmp;
-	    
-	    StateSequence states = new StateSequence();
-	    ObservationSequence observations = new ObservationSequence(observationSequence.get(0));
-	    for(int i = 0; i < model.statesCount(); i++) {
-	    	State candState = model.getState(i);
-	    	states = states.add(candState);
-	    	double score = getProb(observations, states, order);
-	    	prev.add(new StateSequenceWithScore(states, score));
-	    }
-	    
-	    for(int t = 1; t < observationSequence.length(); t++) {
-	    	observations = observations.add(observationSequence.get(t));
-	    	
-	    	int sz = Math.min(beamSize, prev.size());
-	    	for(int sc = 0; prev.size() > 0 && sc < sz; sc++) {
-		    	StateSequenceWithScore top = prev.remove();
-		    	
-		    	for(int i = 0; i < model.statesCount(); i++) {
-		    		State candState = model.getState(i);
-		    		StateSequence newStateSequence = top.getStateSequence().add(candState);
-		    		double score = getProb(observations, newStateSequence, order);
-		    		
-		    		next.add(new StateSequenceWithScore(newStateSequence, score));
-		    	}
-		    }
-	    	
-	    	 prev.clear();
-	    	 tmp = prev;
-	    	 prev = next;
-	    	 next = tmp;
-	    }
-	    	    
-	    //选取得分最高的bestSize个候选句子
-	    ArrayList<StateSequence> result = new ArrayList<>();
-	    int num = Math.min(k, prev.size());
-
-	    for(int i = 0; i < num; i++) 
-	    	result.add(prev.remove().getStateSequence());
-	    
-	    return result;
+		if(observationSequence.length() == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+		if(order < 1)
+			throw new IllegalArgumentException("模型阶数应为正整数： order = " + order);
+
+		int N = model.statesCount();
+		int T = observationSequence.length();
+		double[] emission = new double[N];
+		double[] unigram = order == 1 ? unigramLogProbs() : null;
+
+		PriorityQueue<Hypothesis> prev = new PriorityQueue<>(beamSize, ASCENDING);
+		PriorityQueue<Hypothesis> next = new PriorityQueue<>(beamSize, ASCENDING);
+		PriorityQueue<Hypothesis> tmp;
+
+		int[] states = fillEmission(observationSequence, 0, emission);
+		for(int i : states)
+			offer(prev, beamSize, null, i, model.getLogPi(i) + emission[i]);
+
+		for(int t = 1; t < T; t++) {
+			states = fillEmission(observationSequence, t, emission);
+
+			for(Hypothesis top : prev) {
+				for(int j : states) {
+					double transition = 0;
+					if(order == 1)
+						transition = unigram[j];
+					else if(order == 2)
+						transition = model.transitionLogProb(top.state, j);
+					else
+						transition = model.transitionLogProb(top.history(order - 1, model), model.getState(j));
+
+					offer(next, beamSize, top, j, top.logScore + transition + emission[j]);
+				}
+			}
+
+			prev.clear();
+			tmp = prev;
+			prev = next;
+			next = tmp;
+		}
+
+		//选取得分最高的k个候选序列
+		List<Hypothesis> sorted = new ArrayList<>(prev);
+		Collections.sort(sorted, Collections.reverseOrder(ASCENDING));
+
+		List<StateSequence> result = new ArrayList<>();
+		for(int i = 0; i < Math.min(k, sorted.size()); i++)
+			result.add(sorted.get(i).toStateSequence(model));
+
+		return result;
+	}
+
+	/**
+	 * 将候选加入有界的beam，beam已满且候选得分不高于最低得分时不创建候选
+	 */
+	private static void offer(PriorityQueue<Hypothesis> beam, int beamSize, Hypothesis previous, int state, double logScore) {
+		if(beam.size() >= beamSize) {
+			if(logScore <= beam.peek().logScore)
+				return;
+
+			beam.poll();
+		}
+
+		beam.add(new Hypothesis(previous, state, logScore));
+	}
+
+	/**
+	 * 计算t时刻观测允许的各状态发射观测的概率的对数
+	 * @return	t时刻观测允许的隐藏状态，没有标注词典时为全部隐藏状态
+	 */
+	private int[] fillEmission(ObservationSequence observationSequence, int t, double[] emission) {
+		int observation = model.getObservationIndex(observationSequence.get(t));
+		int[] states = tagDictionary == null ? allStates : tagDictionary.getStates(observation);
+		double[] emissions = model.emissionLogProbs(observation);
+		for(int i : states)
+			emission[i] = emissions[i];
+
+		return states;
+	}
+
+	/**
+	 * order为1时转移没有历史，返回各状态的一元转移概率的对数
+	 */
+	private double[] unigramLogProbs() {
+		double[] unigram = new double[model.statesCount()];
+		StateSequence empty = new StateSequence();
+		for(int j = 0; j < unigram.length; j++)
+			unigram[j] = model.transitionLogProb(empty, model.getState(j));
+
+		return unigram;
+	}
+
+	/**
+	 * beamSearch的候选路径，保存得分的对数、最后一个状态和指向前一个候选的指针
+	 */
+	private static final class Hypothesis {
+
+		private final Hypothesis previous;
+
+		private final int state;
+
+		private final int length;
+
+		private final double logScore;
+
+		public Hypothesis(Hypothesis previous, int state, double logScore) {
+			this.previous = previous;
+			this.state = state;
+			this.length = previous == null ? 1 : previous.length + 1;
+			this.logScore = logScore;
+		}
+
+		/**
+		 * 返回以当前候选结尾的最后size个状态（序列开始处不足size个时返回全部状态）
+		 */
+		private StateSequence history(int size, HMModel model) {
+			State[] states = new State[Math.min(size, length)];
+			Hypothesis current = this;
+			for(int i = states.length - 1; i >= 0; i--) {
+				states[i] = model.getState(current.state);
+				current = current.previous;
+			}
+
+			return new StateSequence(states);
+		}
+
+		private StateSequence toStateSequence(HMModel model) {
+			return history(length, model);
+		}
 	}
 }
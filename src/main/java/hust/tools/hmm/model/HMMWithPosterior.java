@@ -0,0 +1,273 @@
+package hust.tools.hmm.model;
+
+import java.util.Arrays;
+
+import hust.tools.hmm.utils.CommonUtils;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于前向-后向算法的后验解码HMM，用于1阶HMM
+ *<li>一次前向-后向计算同时得到每个时刻各隐藏状态的后验概率、最大后验隐藏序列和观测序列的概率
+ *<li>前向和后向递推共用同一个工作空间，发射概率每个时刻只查询一次，转移概率在构造时转为自然对数
+ *<li>解码器不保存解码状态，每个线程使用各自可重用的工作空间，同一实例可被多个线程共享
+ *<li>给定标注词典时，每个时刻只计算该时刻观测允许的隐藏状态，其余状态的后验概率为0
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMMWithPosterior implements HMM {
+
+	/**
+	 * HMM模型
+	 */
+	private HMModel model;
+
+	/**
+	 * 标注词典，为null时每个时刻计算全部隐藏状态
+	 */
+	private TagDictionary tagDictionary;
+
+	/**
+	 * 全部隐藏状态的索引
+	 */
+	private int[] allStates;
+
+	/**
+	 * 初始转移概率的自然对数
+	 */
+	private double[] lnPi;
+
+	/**
+	 * 转移概率的自然对数，lnA[i * N + j]
+	 */
+	private double[] lnA;
+
+	/**
+	 * 每个线程独立的解码工作空间
+	 */
+	private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	public HMMWithPosterior(HMModel model) {
+		this(model, null);
+	}
+
+	/**
+	 * @param model			HMM模型
+	 * @param tagDictionary	标注词典，为null时不限制隐藏状态
+	 */
+	public HMMWithPosterior(HMModel model, TagDictionary tagDictionary) {
+		this.model = model;
+		this.tagDictionary = tagDictionary;
+
+		int N = model.statesCount();
+		allStates = new int[N];
+		lnPi = new double[N];
+		lnA = new double[N * N];
+		for(int i = 0; i < N; i++) {
+			allStates[i] = i;
+			lnPi[i] = CommonUtils.LN10 * model.getLogPi(i);
+			for(int j = 0; j < N; j++)
+				lnA[i * N + j] = CommonUtils.LN10 * model.transitionLogProb(i, j);
+		}
+	}
+
+	@Override
+	public double getProb(ObservationSequence observations, StateSequence states, int order) {
+		double logProb = model.getLogPi(states.get(0)) + model.emissionLogProb(states.get(0), observations.get(0));
+		for(int i = 1; i < states.length(); i++)
+			logProb += model.transitionLogProb(new StateSequence(states.get(i - 1)), states.get(i)) +
+					model.emissionLogProb(states.get(i), observations.get(i));
+
+		return Math.pow(10, logProb);
+	}
+
+	@Override
+	public double getProb(ObservationSequence observations, int order) {
+		Workspace workspace = workspaces.get();
+
+		return Math.exp(forwardBackward(observations, workspace));
+	}
+
+	/**
+	 * 返回每个时刻后验概率最大的隐藏状态组成的序列
+	 */
+	@Override
+	public StateSequence bestStateSeqence(ObservationSequence observations, int order) {
+		return decode(observations).getStateSequence();
+	}
+
+	/**
+	 * 一次前向-后向计算得到给定观测序列的后验解码结果
+	 * @param observations	观测序列
+	 * @return				最大后验隐藏序列、每个时刻各隐藏状态的后验概率和观测序列概率的自然对数
+	 */
+	public StateSequenceWithPosterior decode(ObservationSequence observations) {
+		Workspace workspace = workspaces.get();
+		double logProb = forwardBackward(observations, workspace);
+
+		int N = model.statesCount();
+		int T = observations.length();
+		double[] alpha = workspace.alpha;
+		double[] beta = workspace.beta;
+
+		double[][] posteriors = new double[T][N];
+		State[] states = new State[T];
+		for(int t = 0; t < T; t++) {
+			int[] candidates = candidates(workspace.observationSequenceIndex[t]);
+			int best = candidates[0];
+			for(int i : candidates) {
+				if(logProb != Double.NEGATIVE_INFINITY)
+					posteriors[t][i] = Math.exp(alpha[t * N + i] + beta[t * N + i] - logProb);
+
+				if(posteriors[t][i] > posteriors[t][best])
+					best = i;
+			}
+
+			states[t] = model.getState(best);
+		}
+
+		return new StateSequenceWithPosterior(new StateSequence(states), posteriors, logProb);
+	}
+
+	/**
+	 * 前向-后向算法，前向概率和后向概率保存在工作空间中
+	 * @param observationSequence	观测序列
+	 * @param workspace				当前线程的工作空间
+	 * @return						观测序列概率的自然对数
+	 */
+	private double forwardBackward(ObservationSequence observationSequence, Workspace workspace) {
+		if(observationSequence.length() == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+
+		int N = model.statesCount();
+		int T = observationSequence.length();
+		workspace.ensureCapacity(T, N);
+
+		double[] alpha = workspace.alpha;
+		double[] beta = workspace.beta;
+		double[] emission = workspace.emission;
+		double[] terms = workspace.terms;
+		int[] observationSequenceIndex = workspace.observationSequenceIndex;
+
+		//将观测序列转为其索引，并计算每个时刻允许的隐藏状态的发射概率的自然对数
+		for(int t = 0; t < T; t++) {
+			observationSequenceIndex[t] = model.getObservationIndex(observationSequence.get(t));
+			int[] states = candidates(observationSequenceIndex[t]);
+			if(states.length < N) {
+				Arrays.fill(alpha, t * N, (t + 1) * N, Double.NEGATIVE_INFINITY);
+				Arrays.fill(beta, t * N, (t + 1) * N, Double.NEGATIVE_INFINITY);
+			}
+
+			double[] emissions = model.emissionLogProbs(observationSequenceIndex[t]);
+			for(int i : states)
+				emission[t * N + i] = CommonUtils.LN10 * emissions[i];
+		}
+
+		//前向递推
+		int[] prevStates = candidates(observationSequenceIndex[0]);
+		for(int i : prevStates)
+			alpha[i] = lnPi[i] + emission[i];
+
+		for(int t = 1; t < T; t++) {
+			int[] states = candidates(observationSequenceIndex[t]);
+			for(int j : states) {
+				int n = 0;
+				for(int i : prevStates)
+					terms[n++] = alpha[(t - 1) * N + i] + lnA[i * N + j];
+
+				alpha[t * N + j] = CommonUtils.logSumExp(terms, n) + emission[t * N + j];
+			}
+			prevStates = states;
+		}
+
+		//后向递推
+		int[] nextStates = prevStates;
+		for(int i : nextStates)
+			beta[(T - 1) * N + i] = 0;
+
+		for(int t = T - 2; t >= 0; t--) {
+			int[] states = candidates(observationSequenceIndex[t]);
+			for(int i : states) {
+				int n = 0;
+				for(int j : nextStates)
+					terms[n++] = lnA[i * N + j] + emission[(t + 1) * N + j] + beta[(t + 1) * N + j];
+
+				beta[t * N + i] = CommonUtils.logSumExp(terms, n);
+			}
+			nextStates = states;
+		}
+
+		//终止，观测序列的概率由最后时刻的前向概率求和得到
+		int n = 0;
+		for(int i : prevStates)
+			terms[n++] = alpha[(T - 1) * N + i];
+
+		return CommonUtils.logSumExp(terms, n);
+	}
+
+	/**
+	 * 返回观测允许的隐藏状态（升序），没有标注词典时返回全部隐藏状态
+	 * @param observation	观测的索引
+	 * @return				允许的隐藏状态
+	 */
+	private int[] candidates(int observation) {
+		if(tagDictionary == null)
+			return allStates;
+
+		return tagDictionary.getStates(observation);
+	}
+
+	/**
+	 * 前向-后向计算的工作空间，容量随计算过的最长观测序列增长，避免每次解码重新分配数组
+	 */
+	private static final class Workspace {
+
+		/**
+		 * 前向概率的自然对数，alpha[t * N + i]
+		 */
+		private double[] alpha = new double[0];
+
+		/**
+		 * 后向概率的自然对数，beta[t * N + i]
+		 */
+		private double[] beta = new double[0];
+
+		/**
+		 * 发射概率的自然对数，emission[t * N + i]为状态i发射t时刻观测的概率
+		 */
+		private double[] emission = new double[0];
+
+		/**
+		 * 存放log-sum-exp求和项的缓冲区
+		 */
+		private double[] terms = new double[0];
+
+		/**
+		 * 观测序列的索引
+		 */
+		private int[] observationSequenceIndex = new int[0];
+
+		private void ensureCapacity(int T, int N) {
+			if(alpha.length < T * N) {
+				alpha = new double[T * N];
+				beta = new double[T * N];
+				emission = new double[T * N];
+			}
+
+			if(terms.length < N)
+				terms = new double[N];
+
+			if(observationSequenceIndex.length < T)
+				observationSequenceIndex = new int[T];
+		}
+	}
+}
@@ -0,0 +1,412 @@
+package hust.tools.hmm.model;
+
+import java.util.Arrays;
+
+import hust.tools.hmm.utils.CommonUtils;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于2阶维特比解码的HMM，在(s(t-1), s(t))状态对构成的网格上求精确的最优隐藏序列
+ *<li>转移概率使用HMModelBasedBO的三元转移及其回退，首个转移使用二元转移。观测序列的概率由同一网格上的2阶前向算法求和得到
+ *<li>每个时刻的递推对(s(t-2), s(t-1))的每个状态对扩展全部s(t)，代价为O(N³)，整个序列为O(N³·T)，回溯表占用T·N²个int
+ *<li>给定标注词典时每个时刻只扩展该时刻观测允许的隐藏状态，每步的代价降为三个时刻允许的状态数之积
+ *<li>解码器不保存解码状态，每个线程使用各自可重用的工作空间，同一实例可被多个线程共享
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMMWithSecondOrderViterbi implements HMM {
+
+	/**
+	 * HMM模型
+	 */
+	private HMModelBasedBO model;
+
+	/**
+	 * 1阶转移概率的对数，bigram[i * N + j]，三元转移不存在时回退使用
+	 */
+	private double[] bigram;
+
+	/**
+	 * 标注词典，为null时每个时刻扩展全部隐藏状态
+	 */
+	private TagDictionary tagDictionary;
+
+	/**
+	 * 全部隐藏状态的索引
+	 */
+	private int[] allStates;
+
+	/**
+	 * 每个线程独立的解码工作空间，解码器本身不保存解码状态，可被多个线程共享
+	 */
+	private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	public HMMWithSecondOrderViterbi(HMModelBasedBO model) {
+		this(model, null);
+	}
+
+	/**
+	 * @param model			2阶回退模型
+	 * @param tagDictionary	标注词典，为null时不限制隐藏状态
+	 */
+	public HMMWithSecondOrderViterbi(HMModelBasedBO model, TagDictionary tagDictionary) {
+		this.model = model;
+		this.tagDictionary = tagDictionary;
+
+		int N = model.statesCount();
+		allStates = new int[N];
+		for(int i = 0; i < N; i++)
+			allStates[i] = i;
+
+		bigram = new double[N * N];
+		for(int i = 0; i < N; i++) {
+			for(int j = 0; j < N; j++)
+				bigram[i * N + j] = model.transitionLogProb(i, j);
+		}
+	}
+
+	/**
+	 * 返回给定观测序列和隐藏序列在2阶模型中的概率，首个转移为二元转移，其余为三元转移
+	 */
+	@Override
+	public double getProb(ObservationSequence observations, StateSequence states, int order) {
+		if(observations.length() == 0 || states.length() == 0)
+			throw new IllegalArgumentException("状态序列或观测序列不能为空");
+
+		double logProb = model.getLogPi(states.get(0)) + model.emissionLogProb(states.get(0), observations.get(0));
+		for(int t = 1; t < states.length(); t++) {
+			StateSequence history = t == 1 ? new StateSequence(states.get(0)) : new StateSequence(new State[]{states.get(t - 2), states.get(t - 1)});
+			logProb += model.transitionLogProb(history, states.get(t)) + model.emissionLogProb(states.get(t), observations.get(t));
+		}
+
+		return Math.pow(10, logProb);
+	}
+
+	/**
+	 * 返回观测序列在2阶模型中的概率，即标注词典允许的所有隐藏序列按getProb(observations, states, order)计算的概率之和
+	 * 长序列的概率可能下溢为0
+	 */
+	@Override
+	public double getProb(ObservationSequence observations, int order) {
+		return Math.exp(forwardLogProb(observations));
+	}
+
+	@Override
+	public StateSequence bestStateSeqence(ObservationSequence observationSequence, int order) {
+		Workspace workspace = workspaces.get();
+		viterbiCalculator(observationSequence, workspace);
+
+		State[] states = new State[observationSequence.length()];
+		for(int t = 0; t < states.length; t++)
+			states[t] = model.getState(workspace.stateSequenceIndex[t]);
+
+		return new StateSequence(states);
+	}
+
+	/**
+	 * 2阶viterbi算法计算给定观测序列的最优隐藏序列，结果保存在工作空间的stateSequenceIndex中
+	 * delta[(i, j)]为t-1时刻处于状态i、t时刻处于状态j，并输出O1O2...Ot的最大概率的对数
+	 * @param observationSequence	给定的观测序列
+	 * @param workspace				当前线程的工作空间
+	 * @return						最佳路径的概率的对数
+	 */
+	private double viterbiCalculator(ObservationSequence observationSequence, Workspace workspace) {
+		if(observationSequence.length() == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+
+		int N = model.statesCount();
+		int T = observationSequence.length();
+		workspace.ensureCapacity(T, N);
+
+		int[] stateSequenceIndex = workspace.stateSequenceIndex;
+		double[] emission = workspace.emission;
+
+		//t = 0时只有单个状态
+		int[] before = candidates(observationSequence, 0);
+		fillEmission(observationSequence, 0, N, emission);
+		double[] first = workspace.first;
+		Arrays.fill(first, 0, N, Double.NEGATIVE_INFINITY);
+		double logProb = Double.NEGATIVE_INFINITY;
+		stateSequenceIndex[0] = before[0];
+		for(int i : before) {
+			first[i] = model.getLogPi(i) + emission[i];
+			if(logProb < first[i]) {
+				logProb = first[i];
+				stateSequenceIndex[0] = i;
+			}
+		}
+		if(T == 1)
+			return logProb;
+
+		//t = 1时使用二元转移初始化状态对
+		double[] prev = workspace.prev;
+		int[] prevActive = workspace.prevActive;
+		int prevActiveCount = 0;
+		int[] last = candidates(observationSequence, 1);
+		fillEmission(observationSequence, 1, N, emission);
+		Arrays.fill(prev, 0, N * N, Double.NEGATIVE_INFINITY);
+		for(int i : before) {
+			for(int j : last) {
+				int ij = i * N + j;
+				prev[ij] = first[i] + bigram[ij] + emission[j];
+				if(prev[ij] != Double.NEGATIVE_INFINITY)
+					prevActive[prevActiveCount++] = ij;
+			}
+		}
+
+		//归纳计算
+		double[] next = workspace.next;
+		double[] candidate = workspace.candidate;
+		int[] nextActive = workspace.nextActive;
+		int[] psi = workspace.psi;
+		int NN = N * N;
+		for(int t = 2; t < T; t++) {
+			int[] states = candidates(observationSequence, t);
+			fillEmission(observationSequence, t, N, emission);
+			for(int jk = 0; jk < NN; jk++)
+				next[jk] = Double.NEGATIVE_INFINITY;
+
+			int offset = t * NN;
+			for(int a = 0; a < prevActiveCount; a++) {
+				int ij = prevActive[a];
+				int i = ij / N;
+				int j = ij % N;
+				double base = prev[ij] + model.bigramLogBo(i, j);
+
+				//三元转移不存在时回退到二元转移，存在时使用三元转移，只读取t时刻允许的状态
+				for(int k : states)
+					candidate[k] = base + bigram[j * N + k];
+				int[] targets = model.trigramTargets(i, j);
+				double[] logProbs = model.trigramLogProbs(i, j);
+				for(int m = 0; m < targets.length; m++)
+					candidate[targets[m]] = prev[ij] + logProbs[m];
+
+				int jN = j * N;
+				for(int k : states) {
+					if(next[jN + k] < candidate[k]) {
+						next[jN + k] = candidate[k];
+						psi[offset + jN + k] = i;
+					}
+				}
+			}
+
+			int nextActiveCount = 0;
+			for(int jk = 0; jk < NN; jk++) {
+				if(next[jk] != Double.NEGATIVE_INFINITY) {
+					next[jk] += emission[jk % N];
+					if(next[jk] != Double.NEGATIVE_INFINITY)
+						nextActive[nextActiveCount++] = jk;
+				}
+			}
+
+			double[] tmp = prev;
+			prev = next;
+			next = tmp;
+			int[] tmpActive = prevActive;
+			prevActive = nextActive;
+			nextActive = tmpActive;
+			prevActiveCount = nextActiveCount;
+		}
+
+		//结束
+		logProb = Double.NEGATIVE_INFINITY;
+		int best = 0;
+		for(int ij = 0; ij < NN; ij++) {
+			if(logProb < prev[ij]) {
+				logProb = prev[ij];
+				best = ij;
+			}
+		}
+
+		//路径回溯
+		stateSequenceIndex[T - 2] = best / N;
+		stateSequenceIndex[T - 1] = best % N;
+		for(int t = T - 1; t >= 2; t--)
+			stateSequenceIndex[t - 2] = psi[t * NN + stateSequenceIndex[t - 1] * N + stateSequenceIndex[t]];
+
+		return logProb;
+	}
+
+	/**
+	 * 2阶前向算法，在与维特比解码相同的状态对网格上对路径概率求和，在自然对数空间中递推
+	 * @param observationSequence	给定的观测序列
+	 * @return						观测序列概率的自然对数
+	 */
+	private double forwardLogProb(ObservationSequence observationSequence) {
+		if(observationSequence.length() == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+
+		int N = model.statesCount();
+		int T = observationSequence.length();
+		int NN = N * N;
+		double[] emission = new double[N];
+		double[] candidate = new double[N];
+
+		//t = 0
+		int[] before = candidates(observationSequence, 0);
+		fillEmission(observationSequence, 0, N, emission);
+		double[] first = new double[N];
+		Arrays.fill(first, Double.NEGATIVE_INFINITY);
+		for(int i : before)
+			first[i] = CommonUtils.LN10 * (model.getLogPi(i) + emission[i]);
+		if(T == 1)
+			return CommonUtils.logSumExp(first, N);
+
+		//t = 1时使用二元转移
+		int[] last = candidates(observationSequence, 1);
+		fillEmission(observationSequence, 1, N, emission);
+		double[] prev = new double[NN];
+		double[] next = new double[NN];
+		Arrays.fill(prev, Double.NEGATIVE_INFINITY);
+		for(int i : before) {
+			for(int j : last)
+				prev[i * N + j] = first[i] + CommonUtils.LN10 * (bigram[i * N + j] + emission[j]);
+		}
+
+		//递推：alpha[(j, k)] = sum_i alpha[(i, j)] * a(i, j, k) * b(k)
+		for(int t = 2; t < T; t++) {
+			int[] states = candidates(observationSequence, t);
+			fillEmission(observationSequence, t, N, emission);
+			Arrays.fill(next, Double.NEGATIVE_INFINITY);
+
+			for(int i : before) {
+				for(int j : last) {
+					int ij = i * N + j;
+					if(prev[ij] == Double.NEGATIVE_INFINITY)
+						continue;
+
+					double bo = model.bigramLogBo(i, j);
+					for(int k : states)
+						candidate[k] = bo + bigram[j * N + k];
+					int[] targets = model.trigramTargets(i, j);
+					double[] logProbs = model.trigramLogProbs(i, j);
+					for(int m = 0; m < targets.length; m++)
+						candidate[targets[m]] = logProbs[m];
+
+					for(int k : states)
+						next[j * N + k] = logAdd(next[j * N + k], prev[ij] + CommonUtils.LN10 * candidate[k]);
+				}
+			}
+
+			for(int j : last) {
+				for(int k : states)
+					next[j * N + k] += CommonUtils.LN10 * emission[k];
+			}
+
+			double[] tmp = prev;
+			prev = next;
+			next = tmp;
+			before = last;
+			last = states;
+		}
+
+		return CommonUtils.logSumExp(prev, NN);
+	}
+
+	/**
+	 * 计算log(exp(a) + exp(b))
+	 */
+	private static double logAdd(double a, double b) {
+		if(a < b) {
+			double tmp = a;
+			a = b;
+			b = tmp;
+		}
+
+		if(b == Double.NEGATIVE_INFINITY)
+			return a;
+
+		return a + Math.log1p(Math.exp(b - a));
+	}
+
+	/**
+	 * 返回t时刻的观测允许的隐藏状态（升序），没有标注词典时返回全部隐藏状态
+	 */
+	private int[] candidates(ObservationSequence observationSequence, int t) {
+		if(tagDictionary == null)
+			return allStates;
+
+		return tagDictionary.getStates(model.getObservationIndex(observationSequence.get(t)));
+	}
+
+	/**
+	 * 计算t时刻各状态发射观测的概率的对数
+	 */
+	private void fillEmission(ObservationSequence observationSequence, int t, int N, double[] emission) {
+		int observation = model.getObservationIndex(observationSequence.get(t));
+		System.arraycopy(model.emissionLogProbs(observation), 0, emission, 0, N);
+	}
+
+	/**
+	 * 解码的工作空间，容量随解码过的最长观测序列增长，避免每次解码重新分配数组
+	 */
+	private static final class Workspace {
+
+		/**
+		 * 相邻两个时刻的状态对的维特比变量，prev[i * N + j]、next[j * N + k]
+		 */
+		private double[] prev = new double[0];
+
+		private double[] next = new double[0];
+
+		/**
+		 * 相邻两个时刻可达的状态对
+		 */
+		private int[] prevActive = new int[0];
+
+		private int[] nextActive = new int[0];
+
+		/**
+		 * 记忆回退路径，psi[t * N * N + j * N + k]记录t-1时刻处于j、t时刻处于k的最优路径在t-2时刻的状态
+		 */
+		private int[] psi = new int[0];
+
+		/**
+		 * 0时刻各状态的维特比变量
+		 */
+		private double[] first = new double[0];
+
+		/**
+		 * 当前时刻各状态的发射概率
+		 */
+		private double[] emission = new double[0];
+
+		/**
+		 * 由一个状态对转移到各状态的候选得分
+		 */
+		private double[] candidate = new double[0];
+
+		/**
+		 * 状态序列的索引
+		 */
+		private int[] stateSequenceIndex = new int[0];
+
+		private void ensureCapacity(int T, int N) {
+			if(prev.length < N * N) {
+				prev = new double[N * N];
+				next = new double[N * N];
+				prevActive = new int[N * N];
+				nextActive = new int[N * N];
+				first = new double[N];
+				emission = new double[N];
+				candidate = new double[N];
+			}
+
+			if(psi.length < T * N * N)
+				psi = new int[T * N * N];
+
+			if(stateSequenceIndex.length < T)
+				stateSequenceIndex = new int[T];
+		}
+	}
+}
@@ -1,11 +1,20 @@
 package hust.tools.hmm.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
 import hust.tools.hmm.utils.StateSequence;
 
 /**
  *<ul>
  *<li>Description: 基于维特比解码和前向算法的的HMM，用于1阶HMM
+ *<li>解码器不保存解码状态，每个线程使用各自可重用的工作空间，同一实例可被多个线程共享
+ *<li>除最优隐藏序列外，还可用list Viterbi一次解码得到概率最大的k个隐藏序列
+ *<li>给定标注词典时，每个时刻只扩展该时刻观测允许的隐藏状态
+ *<li>模型为回退模型时，每个目标状态只逐个计算出现过的二元转移，其余前驱统一按回退权重取最大值，每步的代价为O(二元转移数 + NlogN)
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2018年1月15日
@@ -19,27 +28,47 @@ public class HMMWithViterbi implements HMM {
 	private HMModel model;
 	
 	/**
-	 * Viterbi变量，delta[t][i]， 在时间t时，HMM沿某一条路径到达状态si，并输出观测序列O1O2...Ot的最大概率的对数
+	 * 标注词典，为null时每个时刻扩展全部隐藏状态
 	 */
-	private double[][] delta;
+	private TagDictionary tagDictionary;
 	
 	/**
-	 * 记忆回退路径，psi[t][i]记录该路径上状态si（在t-1时刻）的前一个状态
+	 * 全部隐藏状态的索引
 	 */
-	private int[][] psi;
+	private int[] allStates;
 	
 	/**
-	 * 状态序列的索引
+	 * 模型为回退模型时用于稀疏的Viterbi归纳计算，否则为null
 	 */
-	private int[] stateSequenceIndex;
+	private HMModelBasedBO backoff;
 	
 	/**
-	 * 观测序列对应最佳路径的概率的对数
+	 * 每个线程独立的解码工作空间，解码器本身不保存解码状态，可被多个线程共享
 	 */
-	private double logProb;
+	private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
 	
 	public HMMWithViterbi(HMModel model) {
+		this(model, null);
+	}
+	
+	/**
+	 * @param model			HMM模型
+	 * @param tagDictionary	标注词典，为null时不限制隐藏状态
+	 */
+	public HMMWithViterbi(HMModel model, TagDictionary tagDictionary) {
 		this.model = model;
+		this.tagDictionary = tagDictionary;
+		if(model instanceof HMModelBasedBO)
+			backoff = (HMModelBasedBO) model;
+		
+		allStates = new int[model.statesCount()];
+		for(int i = 0; i < allStates.length; i++)
+			allStates[i] = i;
 	}
 
 	@Override
@@ -54,58 +83,172 @@ public class HMMWithViterbi implements HMM {
 
 	@Override
 	public double getProb(ObservationSequence observations, int order) {
-		ForwardAlgorithm algorithm = new ForwardAlgorithm(model, observations);
+		ForwardAlgorithm algorithm = new ForwardAlgorithm(model, observations, tagDictionary);
 		
 		return algorithm.getProb();
 	}
 	
 	@Override
 	public StateSequence bestStateSeqence(ObservationSequence observationSequence, int order) {
-		viterbiCalculator(observationSequence);
+		Workspace workspace = workspaces.get();
+		viterbiCalculator(observationSequence, workspace);
+		
+		State[] states = new State[observationSequence.length()];
+		for(int t = 0; t < states.length; t++)
+			states[t] = model.getState(workspace.stateSequenceIndex[t]);
+		
+		return new StateSequence(states);
+	}
+
+	/**
+	 * 返回给定观测序列概率最大的k个隐藏序列（list Viterbi），每个格点用有界堆保留到达该格点的前k条路径，结果是精确的
+	 * @param observationSequence	观测序列
+	 * @param order					模型阶数
+	 * @param k						返回的隐藏序列数量
+	 * @return						按得分从高到低排列的隐藏序列，得分为路径概率的对数，路径总数不足k时返回全部路径
+	 */
+	public List<StateSequenceWithScore> bestStateSeqences(ObservationSequence observationSequence, int order, int k) {
+		if(observationSequence.length() == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+		if(k < 1)
+			throw new IllegalArgumentException("k应为正整数： k = " + k);
+		
+		int N = model.statesCount();
+		int T = observationSequence.length();
+		Workspace workspace = workspaces.get();
+		workspace.ensureCapacity(T, N);
+		workspace.ensureKBestCapacity(T, N, k);
 		
-		StateSequence sequence = new StateSequence();
-		for(int index : stateSequenceIndex)
-			sequence = sequence.add(model.getState(index));
+		//kScore[(t * N + j) * k + r]为到达格点(t, j)的第r条路径的概率的对数，kState、kRank为该路径在t-1时刻的格点和名次
+		double[] kScore = workspace.kScore;
+		int[] kState = workspace.kState;
+		int[] kRank = workspace.kRank;
+		int[] kCount = workspace.kCount;
+		BoundedHeap heap = workspace.heap;
+		
+		int[] observationSequenceIndex = workspace.observationSequenceIndex;
+		for(int t = 0; t < T; t++) 
+			observationSequenceIndex[t] = model.getObservationIndex(observationSequence.get(t));
+		
+		//初始化
+		int[] prevStates = candidates(observationSequenceIndex[0]);
+		double[] emissions = model.emissionLogProbs(observationSequenceIndex[0]);
+		for(int i : prevStates) {
+			kScore[i * k] = model.getLogPi(i) + emissions[i];
+			kCount[i] = 1;
+		}
+		
+		//归纳计算，每个格点的路径按得分从高到低存放，得分不足堆中最低得分时该前驱格点的后续路径都可跳过
+		for(int t = 1; t < T; t++) {
+			int[] states = candidates(observationSequenceIndex[t]);
+			emissions = model.emissionLogProbs(observationSequenceIndex[t]);
+			for(int j : states) {
+				heap.clear();
+				for(int i : prevStates) {
+					int prev = (t - 1) * N + i;
+					double transition = model.transitionLogProb(i, j);
+					for(int r = 0; r < kCount[prev]; r++) {
+						if(!heap.offer(kScore[prev * k + r] + transition, i, r))
+							break;
+					}
+				}
+				
+				heap.sortDescending();
+				int cell = t * N + j;
+				double emission = emissions[j];
+				for(int r = 0; r < heap.size; r++) {
+					kScore[cell * k + r] = heap.score[r] + emission;
+					kState[cell * k + r] = heap.state[r];
+					kRank[cell * k + r] = heap.rank[r];
+				}
+				kCount[cell] = heap.size;
+			}
+			prevStates = states;
+		}
+		
+		//结束，在最后时刻的所有格点中选取前k条路径
+		heap.clear();
+		int last = (T - 1) * N;
+		for(int j : prevStates) {
+			for(int r = 0; r < kCount[last + j]; r++) {
+				if(!heap.offer(kScore[(last + j) * k + r], j, r))
+					break;
+			}
+		}
+		heap.sortDescending();
+		
+		//路径回溯
+		List<StateSequenceWithScore> result = new ArrayList<>(heap.size);
+		for(int n = 0; n < heap.size; n++) {
+			State[] states = new State[T];
+			int j = heap.state[n];
+			int r = heap.rank[n];
+			for(int t = T - 1; t >= 0; t--) {
+				states[t] = model.getState(j);
+				if(t > 0) {
+					int index = (t * N + j) * k + r;
+					j = kState[index];
+					r = kRank[index];
+				}
+			}
+			
+			result.add(new StateSequenceWithScore(new StateSequence(states), heap.score[n]));
+		}
 		
-		return sequence;
+		return result;
 	}
 
 	/**
-	 * viterbi算法计算给定观测序列的最优隐藏序列
+	 * viterbi算法计算给定观测序列的最优隐藏序列，结果保存在工作空间的stateSequenceIndex中
 	 * @param observationSequence	给定的观测序列
+	 * @param workspace				当前线程的工作空间
+	 * @return						最佳路径的概率的对数
 	 */
-	private void viterbiCalculator(ObservationSequence observationSequence) {
+	private double viterbiCalculator(ObservationSequence observationSequence, Workspace workspace) {
 		if(observationSequence.length() == 0)
 			throw new IllegalArgumentException("观测序列不能为空");
 		
 		int stateTypesCount = model.statesCount();
 		int observaionLength = observationSequence.length();
+		workspace.ensureCapacity(observaionLength, stateTypesCount);
 		
-		delta = new double[observaionLength][stateTypesCount];
-		psi = new int[observaionLength][stateTypesCount];
-		stateSequenceIndex = new int[observaionLength];
+		double[] delta = workspace.delta;
+		int[] psi = workspace.psi;
+		int[] stateSequenceIndex = workspace.stateSequenceIndex;
 		
 		//将观测序列转为其索引
-		int[] observationSequenceIndex = new int[observaionLength];
+		int[] observationSequenceIndex = workspace.observationSequenceIndex;
 		for(int t = 0; t < observaionLength; t++) 
 			observationSequenceIndex[t] = model.getObservationIndex(observationSequence.get(t));
 		
 		//Viterbi解码
 		//初始化参数
-		for(int i = 0; i < stateTypesCount; i++) {
-			delta[0][i] = model.getLogPi(i) + model.emissionLogProb(i, observationSequenceIndex[0]);
-			psi[0][i] = 0;
+		int[] prevStates = candidates(observationSequenceIndex[0]);
+		double[] emissions = model.emissionLogProbs(observationSequenceIndex[0]);
+		for(int i : prevStates) {
+			delta[i] = model.getLogPi(i) + emissions[i];
+			psi[i] = 0;
 		}
 		
-		//归纳计算
-		for(int t = 1; t < observationSequenceIndex.length; t++) 		
-			for(int i = 0; i < stateTypesCount; i++)
-				viterbiStep(observationSequenceIndex[t], t, i);
+		//归纳计算，只扩展当前观测允许的隐藏状态，前驱只取前一观测允许的隐藏状态
+		for(int t = 1; t < observaionLength; t++) {
+			int[] states = candidates(observationSequenceIndex[t]);
+			emissions = model.emissionLogProbs(observationSequenceIndex[t]);
+			if(backoff != null) {
+				sparseViterbiStep(emissions, t, stateTypesCount, prevStates, states, workspace);
+			} else {
+				for(int i : states)
+					viterbiStep(emissions, t, i, stateTypesCount, prevStates, delta, psi);
+			}
+			prevStates = states;
+		}
 		
 		//结束
-		logProb = Math.log10(Double.MIN_VALUE);
-		for(int i = 0; i < stateTypesCount; i++) {
-			double currentLogProb = delta[observaionLength - 1][i];
+		int last = (observaionLength - 1) * stateTypesCount;
+		double logProb = Double.NEGATIVE_INFINITY;
+		stateSequenceIndex[observaionLength - 1] = prevStates[0];
+		for(int i : prevStates) {
+			double currentLogProb = delta[last + i];
 			
 			if (logProb < currentLogProb) {
 				logProb = currentLogProb;
@@ -115,21 +258,28 @@ public class HMMWithViterbi implements HMM {
 		
 		//路径回溯
 		for(int t = observaionLength - 2; t >= 0; t--)
-			stateSequenceIndex[t] = psi[t + 1][stateSequenceIndex[t + 1]];
+			stateSequenceIndex[t] = psi[(t + 1) * stateTypesCount + stateSequenceIndex[t + 1]];
+		
+		return logProb;
 	}
 	
 	/**
 	 * 维特比变量的归纳计算
-	 * @param observationIndex	t时刻的观测状态
+	 * @param emissions		各状态发射t时刻观测的概率的对数
 	 * @param t					时刻t
 	 * @param j					隐藏状态
+	 * @param N					隐藏状态数量
+	 * @param prevStates		t-1时刻允许的隐藏状态（升序）
+	 * @param delta				维特比变量，delta[t * N + i]
+	 * @param psi				回退路径，psi[t * N + i]
 	 */
-	private void viterbiStep(int observation, int t, int j) {
-		double maxDelta = Math.log10(Double.MIN_VALUE);
-		int max_psi = 0;//最短路径
+	private void viterbiStep(double[] emissions, int t, int j, int N, int[] prevStates, double[] delta, int[] psi) {
+		double maxDelta = Double.NEGATIVE_INFINITY;
+		int max_psi = prevStates[0];//最短路径
 		
-		for(int i = 0; i < model.statesCount(); i++) {
-			double currentDelta = delta[t - 1][i] + model.transitionLogProb(i, j);
+		int prev = (t - 1) * N;
+		for(int i : prevStates) {
+			double currentDelta = delta[prev + i] + model.transitionLogProb(i, j);
 			
 			if(maxDelta < currentDelta) {
 				maxDelta = currentDelta;
@@ -137,8 +287,315 @@ public class HMMWithViterbi implements HMM {
 			}
 		}
 		
-		delta[t][j] = maxDelta + model.emissionLogProb(j, observation);
-		psi[t][j] = max_psi;
+		delta[t * N + j] = maxDelta + emissions[j];
+		psi[t * N + j] = max_psi;
+	}
+	
+	/**
+	 * 回退模型的维特比变量的归纳计算，结果与viterbiStep相同。
+	 * 对目标状态j，出现过的二元转移(i, j)逐个计算delta(i) + logP(j | i)；
+	 * 其余前驱的转移概率为logBo(i) + logP(j)，按delta(i) + logBo(i)从大到小排序后，第一个没有二元转移(i, j)的前驱即为其中最优的
+	 * @param emissions		各状态发射t时刻观测的概率的对数
+	 * @param t				时刻t
+	 * @param N				隐藏状态数量
+	 * @param prevStates	t-1时刻允许的隐藏状态（升序）
+	 * @param states		t时刻允许的隐藏状态
+	 * @param workspace		当前线程的工作空间
+	 */
+	private void sparseViterbiStep(double[] emissions, int t, int N, int[] prevStates, int[] states, Workspace workspace) {
+		double[] delta = workspace.delta;
+		int[] psi = workspace.psi;
+		int[] rank = workspace.rank;
+		double[] key = workspace.rankKey;
+		int[] marks = workspace.marks;
+		int prev = (t - 1) * N;
+		
+		//前驱按delta(i) + logBo(i)从大到小排序，相同时索引小的在前
+		int count = prevStates.length;
+		for(int n = 0; n < count; n++) {
+			int i = prevStates[n];
+			rank[n] = i;
+			key[i] = delta[prev + i] + backoff.unigramLogBo(i);
+		}
+		sortByKeyDescending(rank, count, key, workspace.rankBuffer);
+		
+		//标记t-1时刻允许的前驱
+		int allowed = workspace.nextMark();
+		if(count < N) {
+			for(int i : prevStates)
+				marks[i] = allowed;
+		}
+		
+		for(int j : states) {
+			int seen = workspace.nextMark();
+			double maxDelta = Double.NEGATIVE_INFINITY;
+			int max_psi = prevStates[0];
+			
+			int[] sources = backoff.bigramSources(j);
+			double[] logProbs = backoff.bigramSourceLogProbs(j);
+			for(int n = 0; n < sources.length; n++) {
+				int i = sources[n];
+				if(count < N && marks[i] != allowed)
+					continue;
+				
+				workspace.seen[i] = seen;
+				double currentDelta = delta[prev + i] + logProbs[n];
+				if(maxDelta < currentDelta || (maxDelta == currentDelta && i < max_psi)) {
+					maxDelta = currentDelta;
+					max_psi = i;
+				}
+			}
+			
+			double unigram = backoff.unigramLogProb(j);
+			for(int n = 0; n < count; n++) {
+				int i = rank[n];
+				if(workspace.seen[i] == seen)
+					continue;
+				
+				double currentDelta = delta[prev + i] + (backoff.unigramLogBo(i) + unigram);
+				if(maxDelta < currentDelta || (maxDelta == currentDelta && i < max_psi)) {
+					maxDelta = currentDelta;
+					max_psi = i;
+				}
+				break;
+			}
+			
+			delta[t * N + j] = maxDelta + emissions[j];
+			psi[t * N + j] = max_psi;
+		}
+	}
+	
+	/**
+	 * 将index[0, length)按key从大到小稳定排序（归并排序），key相同时保持原有的升序
+	 */
+	private static void sortByKeyDescending(int[] index, int length, double[] key, int[] buffer) {
+		for(int width = 1; width < length; width *= 2) {
+			for(int from = 0; from < length - width; from += 2 * width) {
+				int mid = from + width;
+				int to = Math.min(from + 2 * width, length);
+				int left = from, right = mid, k = from;
+				while(left < mid && right < to) {
+					if(key[index[right]] > key[index[left]])
+						buffer[k++] = index[right++];
+					else
+						buffer[k++] = index[left++];
+				}
+				while(left < mid)
+					buffer[k++] = index[left++];
+				while(right < to)
+					buffer[k++] = index[right++];
+				System.arraycopy(buffer, from, index, from, to - from);
+			}
+		}
+	}
+	
+	/**
+	 * 返回观测允许的隐藏状态（升序），没有标注词典时返回全部隐藏状态
+	 * @param observation	观测的索引
+	 * @return				允许的隐藏状态
+	 */
+	private int[] candidates(int observation) {
+		if(tagDictionary == null)
+			return allStates;
+		
+		return tagDictionary.getStates(observation);
+	}
+	
+	/**
+	 * 解码的工作空间，容量随解码过的最长观测序列增长，避免每次解码重新分配数组
+	 */
+	private static final class Workspace {
+		
+		/**
+		 * Viterbi变量，delta[t * N + i]， 在时间t时，HMM沿某一条路径到达状态si，并输出观测序列O1O2...Ot的最大概率的对数
+		 */
+		private double[] delta = new double[0];
+		
+		/**
+		 * 记忆回退路径，psi[t * N + i]记录该路径上状态si（在t-1时刻）的前一个状态
+		 */
+		private int[] psi = new int[0];
+		
+		/**
+		 * 观测序列的索引
+		 */
+		private int[] observationSequenceIndex = new int[0];
+		
+		/**
+		 * 状态序列的索引
+		 */
+		private int[] stateSequenceIndex = new int[0];
+		
+		/**
+		 * list Viterbi的格点路径，按(t * N + i) * k + r存放得分、前驱状态和前驱名次，kCount[t * N + i]为格点保留的路径数
+		 */
+		private double[] kScore = new double[0];
+		
+		private int[] kState = new int[0];
+		
+		private int[] kRank = new int[0];
+		
+		private int[] kCount = new int[0];
+		
+		/**
+		 * 选取格点前k条路径的有界堆
+		 */
+		private BoundedHeap heap = new BoundedHeap(0);
+		
+		/**
+		 * 稀疏归纳计算中按delta(i) + logBo(i)排序的前驱、排序键和归并缓冲区
+		 */
+		private int[] rank = new int[0];
+		
+		private double[] rankKey = new double[0];
+		
+		private int[] rankBuffer = new int[0];
+		
+		/**
+		 * 稀疏归纳计算中标记允许的前驱和已逐个计算的前驱，标记值为mark时有效
+		 */
+		private int[] marks = new int[0];
+		
+		private int[] seen = new int[0];
+		
+		private int mark;
+		
+		/**
+		 * 返回新的标记值，标记值用尽时清空标记数组
+		 */
+		private int nextMark() {
+			if(mark == Integer.MAX_VALUE) {
+				Arrays.fill(marks, 0);
+				Arrays.fill(seen, 0);
+				mark = 0;
+			}
+			
+			return ++mark;
+		}
+		
+		private void ensureKBestCapacity(int T, int N, int k) {
+			if(kScore.length < T * N * k) {
+				kScore = new double[T * N * k];
+				kState = new int[T * N * k];
+				kRank = new int[T * N * k];
+			}
+			
+			if(kCount.length < T * N)
+				kCount = new int[T * N];
+			
+			if(heap.score.length != k)
+				heap = new BoundedHeap(k);
+		}
+		
+		private void ensureCapacity(int T, int N) {
+			if(delta.length < T * N) {
+				delta = new double[T * N];
+				psi = new int[T * N];
+			}
+			
+			if(stateSequenceIndex.length < T) {
+				observationSequenceIndex = new int[T];
+				stateSequenceIndex = new int[T];
+			}
+			
+			if(rank.length < N) {
+				rank = new int[N];
+				rankKey = new double[N];
+				rankBuffer = new int[N];
+				marks = new int[N];
+				seen = new int[N];
+				mark = 0;
+			}
+		}
+	}
+	
+	/**
+	 * 保留得分最高的至多k个(得分, 前驱状态, 前驱名次)的小顶堆，堆顶为保留的最低得分
+	 */
+	private static final class BoundedHeap {
+		
+		private final double[] score;
+		
+		private final int[] state;
+		
+		private final int[] rank;
+		
+		private int size;
+		
+		private BoundedHeap(int capacity) {
+			score = new double[capacity];
+			state = new int[capacity];
+			rank = new int[capacity];
+		}
+		
+		private void clear() {
+			size = 0;
+		}
+		
+		/**
+		 * 加入一条路径，堆已满且得分不高于堆顶时不加入
+		 * @return	是否加入
+		 */
+		private boolean offer(double s, int i, int r) {
+			if(size < score.length) {
+				int child = size++;
+				set(child, s, i, r);
+				while(child > 0) {
+					int parent = (child - 1) / 2;
+					if(score[parent] <= score[child])
+						break;
+					swap(parent, child);
+					child = parent;
+				}
+				
+				return true;
+			}
+			
+			if(s <= score[0])
+				return false;
+			
+			set(0, s, i, r);
+			siftDown(0, size);
+			
+			return true;
+		}
+		
+		/**
+		 * 堆排序，排序后[0, size)按得分从高到低排列
+		 */
+		private void sortDescending() {
+			for(int end = size - 1; end > 0; end--) {
+				swap(0, end);
+				siftDown(0, end);
+			}
+		}
+		
+		private void siftDown(int parent, int end) {
+			while(true) {
+				int child = 2 * parent + 1;
+				if(child >= end)
+					break;
+				if(child + 1 < end && score[child + 1] < score[child])
+					child++;
+				if(score[parent] <= score[child])
+					break;
+				swap(parent, child);
+				parent = child;
+			}
+		}
+		
+		private void set(int index, double s, int i, int r) {
+			score[index] = s;
+			state[index] = i;
+			rank[index] = r;
+		}
+		
+		private void swap(int a, int b) {
+			double s = score[a];
+			int i = state[a];
+			int r = rank[a];
+			set(a, score[b], state[b], rank[b]);
+			set(b, s, i, r);
+		}
 	}
-
 }
@@ -64,6 +64,20 @@ public interface HMModel extends Serializable, Cloneable {
 	 */
 	public double emissionLogProb(int i, int t);
 	
+	/**
+	 * 返回各隐藏状态发射给定观测的概率的对数，解码时每个观测只需取一次该向量
+	 * @param t	观测状态索引，未登录观测为-1
+	 * @return	下标为隐藏状态索引的发射概率对数，所有未登录观测共享同一个向量，调用者不应修改返回的数组
+	 */
+	public double[] emissionLogProbs(int t);
+	
+	/**
+	 * 返回训练中发射过给定观测的隐藏状态索引（升序），即发射矩阵中存在的(状态, 观测)对
+	 * @param t	观测状态索引
+	 * @return	发射过该观测的隐藏状态索引，未登录观测或没有发射记录的观测返回空数组
+	 */
+	public int[] seenStates(int t);
+	
 	/**
 	 * 返回所有观测状态
 	 * @return	观测状态
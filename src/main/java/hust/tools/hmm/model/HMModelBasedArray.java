@@ -1,5 +1,309 @@
 package hust.tools.hmm.model;
 
-public class HMModelBasedArray {
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
 
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+
+/**
+ *<ul>
+ *<li>Description: 基于数组的1阶隐式马尔科夫模型，初始概率、转移概率和发射概率均按字典索引存放在一维数组中
+ *<li>由训练好的1阶模型（如HMModelBasedBO）构造，回退后的转移概率在构造时展开，解码时每次查询只需一次数组读取
+ *<li>模型只保存数组和字典，不引用源模型，构造完成后源模型可被丢弃
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedArray implements HMModel {
+
+	/**
+	 * 版本序列号
+	 */
+	private static final long serialVersionUID = -2302519153426170185L;
+
+	private final Observation UNKNOWN = new StringObservation("UNKNOWN");
+
+	private Dictionary dict;
+
+	/**
+	 * 隐藏状态类型数量N
+	 */
+	private int statesCount;
+
+	/**
+	 * 观测状态类型数量M
+	 */
+	private int observationsCount;
+
+	/**
+	 * 初始概率的对数，pi[i]
+	 */
+	private double[] pi;
+
+	/**
+	 * 1阶转移概率的对数，transition[i * N + j]为状态i转移到状态j的概率
+	 */
+	private double[] transition;
+
+	/**
+	 * 发射概率的对数，按观测存放，emission[t][i]为状态i发射观测t的概率，第M行为未登录观测的发射概率
+	 */
+	private double[][] emission;
+
+	/**
+	 * 由训练好的1阶模型构造数组模型
+	 * @param model	训练好的模型
+	 */
+	public HMModelBasedArray(HMModel model) {
+		if(model.getOrder() > 1)
+			throw new IllegalArgumentException("数组模型只支持1阶模型： order = " + model.getOrder());
+
+		this.dict = model.getDict();
+		this.statesCount = model.statesCount();
+		this.observationsCount = model.observationsCount();
+
+		int N = statesCount;
+		int M = observationsCount;
+		pi = new double[N];
+		transition = new double[N * N];
+		emission = new double[M + 1][];
+
+		for(int i = 0; i < N; i++) {
+			pi[i] = model.getLogPi(i);
+
+			for(int j = 0; j < N; j++)
+				transition[i * N + j] = model.transitionLogProb(i, j);
+		}
+
+		for(int t = 0; t < M; t++)
+			emission[t] = model.emissionLogProbs(t).clone();
+		emission[M] = model.emissionLogProbs(-1).clone();
+	}
+
+	@Override
+	public double getLogPi(State state) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return 0;
+
+		return pi[i];
+	}
+
+	@Override
+	public double getLogPi(int i) {
+		return pi[i];
+	}
+
+	@Override
+	public double transitionLogProb(int i, int j) {
+		return transition[i * statesCount + j];
+	}
+
+	/**
+	 * 1阶模型只依赖前一个隐藏状态，start中更早的状态被忽略
+	 */
+	@Override
+	public double transitionLogProb(StateSequence start, State target) {
+		int j = dict.getIndex(target);
+		if(start.length() == 0 || j == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		int i = dict.getIndex(start.get(start.length() - 1));
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return transitionLogProb(i, j);
+	}
+
+	@Override
+	public double emissionLogProb(State state, Observation observation) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return emissionLogProb(i, getObservationIndex(observation));
+	}
+
+	@Override
+	public double emissionLogProb(int i, int t) {
+		if(t == -1)
+			t = observationsCount;
+
+		return emission[t][i];
+	}
+
+	@Override
+	public double[] emissionLogProbs(int t) {
+		if(t == -1)
+			t = observationsCount;
+
+		return emission[t];
+	}
+
+	/**
+	 * 与未登录观测的发射概率不同的发射视为训练中出现过
+	 */
+	@Override
+	public int[] seenStates(int t) {
+		if(t < 0 || t >= observationsCount)
+			return new int[0];
+
+		double[] unknown = emission[observationsCount];
+		int[] states = new int[statesCount];
+		int size = 0;
+		for(int i = 0; i < statesCount; i++) {
+			if(emission[t][i] != unknown[i])
+				states[size++] = i;
+		}
+
+		return Arrays.copyOf(states, size);
+	}
+
+	@Override
+	public Observation[] getObservations() {
+		Set<Observation> set = dict.getObservations();
+
+		return set.toArray(new Observation[set.size()]);
+	}
+
+	@Override
+	public State[] getStates() {
+		Set<State> set = dict.getStates();
+
+		return set.toArray(new State[set.size()]);
+	}
+
+	@Override
+	public State getState(int index) {
+		return dict.getState(index);
+	}
+
+	@Override
+	public int statesCount() {
+		return statesCount;
+	}
+
+	@Override
+	public int observationsCount() {
+		return observationsCount;
+	}
+
+	@Override
+	public int getObservationIndex(Observation observation) {
+		if(!dict.containObservation(observation))
+			return dict.getIndex(UNKNOWN);
+
+		return dict.getIndex(observation);
+	}
+
+	@Override
+	public int getOrder() {
+		return 1;
+	}
+
+	@Override
+	public Dictionary getDict() {
+		return dict;
+	}
+
+	/**
+	 * 由数组构造初始概率，每次调用重新构造
+	 */
+	@Override
+	public HashMap<State, Double> getPi() {
+		HashMap<State, Double> pi = new HashMap<>();
+		for(int i = 0; i < statesCount; i++)
+			pi.put(dict.getState(i), this.pi[i]);
+
+		return pi;
+	}
+
+	/**
+	 * 由数组构造展开后的1阶转移概率，不含回退结构，每次调用重新构造
+	 */
+	@Override
+	public HashMap<StateSequence, ARPAEntry> getTransitionMatrix() {
+		HashMap<StateSequence, ARPAEntry> transitionMatrix = new HashMap<>();
+		for(int i = 0; i < statesCount; i++) {
+			for(int j = 0; j < statesCount; j++) {
+				StateSequence sequence = new StateSequence(new State[]{dict.getState(i), dict.getState(j)});
+				transitionMatrix.put(sequence, new ARPAEntry(transitionLogProb(i, j), 0));
+			}
+		}
+
+		return transitionMatrix;
+	}
+
+	/**
+	 * 由数组构造发射概率，与未登录观测的发射概率相同的发射不单独保存，每次调用重新构造
+	 */
+	@Override
+	public HashMap<State, EmissionProbEntry> getEmissionMatrix() {
+		double[] unknown = emission[observationsCount];
+		HashMap<State, EmissionProbEntry> emissionMatrix = new HashMap<>();
+		for(int i = 0; i < statesCount; i++) {
+			EmissionProbEntry entry = new EmissionProbEntry();
+			entry.put(UNKNOWN, unknown[i]);
+			for(int t = 0; t < observationsCount; t++) {
+				if(emission[t][i] != unknown[i])
+					entry.put(dict.getObservation(t), emission[t][i]);
+			}
+
+			emissionMatrix.put(dict.getState(i), entry);
+		}
+
+		return emissionMatrix;
+	}
+
+	@Override
+	public HMModel clone() throws CloneNotSupportedException {
+		HMModelBasedArray clone = (HMModelBasedArray) super.clone();
+		clone.pi = pi.clone();
+		clone.transition = transition.clone();
+		clone.emission = new double[emission.length][];
+		for(int t = 0; t < emission.length; t++)
+			clone.emission[t] = emission[t].clone();
+
+		return clone;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((dict == null) ? 0 : dict.hashCode());
+		result = prime * result + Arrays.deepHashCode(emission);
+		result = prime * result + Arrays.hashCode(pi);
+		result = prime * result + Arrays.hashCode(transition);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		HMModelBasedArray other = (HMModelBasedArray) obj;
+		if (dict == null) {
+			if (other.dict != null)
+				return false;
+		} else if (!dict.equals(other.dict))
+			return false;
+		if (!Arrays.deepEquals(emission, other.emission))
+			return false;
+		if (!Arrays.equals(pi, other.pi))
+			return false;
+		if (!Arrays.equals(transition, other.transition))
+			return false;
+		return true;
+	}
 }
@@ -3,9 +3,17 @@ package hust.tools.hmm.model;
 import hust.tools.hmm.utils.StateSequence;
 import hust.tools.hmm.utils.StringObservation;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import hust.tools.hmm.utils.CommonUtils;
 import hust.tools.hmm.utils.Dictionary;
 import hust.tools.hmm.utils.Observation;
 import hust.tools.hmm.utils.State;
@@ -37,12 +45,276 @@ public class HMModelBasedBO implements HMModel {
 	
 	private HashMap<State, EmissionProbEntry>  emissionMatrix;
 	
+	/**
+	 * 按索引存放的初始概率的对数
+	 */
+	private double[] logPi;
+	
+	/**
+	 * 按索引存放的一元转移概率的对数，不存在的一元转移为0
+	 */
+	private double[] unigramLogProb;
+	
+	/**
+	 * 按索引存放的一元转移回退权重的对数，不存在的一元转移为0
+	 */
+	private double[] unigramLogBo;
+	
+	/**
+	 * bigramTargets[i]为以状态i为起点的二元转移的目标状态索引（升序），bigramLogProbs[i]为对应的转移概率的对数
+	 */
+	private int[][] bigramTargets;
+	
+	private double[][] bigramLogProbs;
+	
+	/**
+	 * bigramLogBos[i]为以状态i为起点的二元转移的回退权重的对数，与bigramTargets[i]对应
+	 */
+	private double[][] bigramLogBos;
+	
+	/**
+	 * bigramSources[j]为以状态j为目标的二元转移的起点状态索引（升序），bigramSourceLogProbs[j]为对应的转移概率的对数
+	 */
+	private int[][] bigramSources;
+	
+	private double[][] bigramSourceLogProbs;
+	
+	/**
+	 * trigramTargets[h * N + i]为以状态h、i为历史的三元转移的目标状态索引（升序），trigramLogProbs为对应的转移概率的对数
+	 */
+	private int[][] trigramTargets;
+	
+	private double[][] trigramLogProbs;
+	
+	/**
+	 * emissionObservations[i]为状态i发射的观测状态索引（升序），emissionLogProbs[i]为对应的发射概率的对数
+	 */
+	private int[][] emissionObservations;
+	
+	private double[][] emissionLogProbs;
+	
+	/**
+	 * 按索引存放的各状态发射未登录观测的概率的对数，也是所有未登录观测共享的发射向量
+	 */
+	private double[] unknownEmissionLogProb;
+	
+	/**
+	 * 构造模型时立即计算发射向量的高频观测数量，其余观测的发射向量在首次查询时计算
+	 */
+	private static final int EAGER_EMISSION_COLUMNS = 1000;
+	
+	/**
+	 * 按观测存放的发射向量，emissionColumns[t][i]为状态i发射观测t的概率的对数，未计算的为null
+	 */
+	private transient AtomicReferenceArray<double[]> emissionColumns;
+	
+	/**
+	 * 构造模型，并建立按索引查询概率的结构，构造后不应再修改传入的概率矩阵
+	 */
 	public HMModelBasedBO(int order, Dictionary dict, HashMap<State, Double> pi, HashMap<StateSequence, ARPAEntry>  transitionMatrix, HashMap<State, EmissionProbEntry>  emissionMatrix) {
 		this.order = order;
 		this.dict = dict;
 		this.pi = pi;
 		this.transitionMatrix = transitionMatrix;
 		this.emissionMatrix = emissionMatrix;
+		
+		buildIndex();
+	}
+	
+	/**
+	 * 建立按索引查询初始概率、1阶和2阶转移概率和发射概率的结构，使索引查询不需要创建对象和计算哈希
+	 */
+	private void buildIndex() {
+		int N = dict.stateCount();
+		
+		logPi = new double[N];
+		unigramLogProb = new double[N];
+		unigramLogBo = new double[N];
+		unknownEmissionLogProb = new double[N];
+		for(int i = 0; i < N; i++) 
+			logPi[i] = getLogPi(dict.getState(i));
+		
+		//统计每个起点的二元转移数量和每对历史的三元转移数量
+		int[] bigramSize = new int[N];
+		int[] trigramSize = new int[N * N];
+		for(Entry<StateSequence, ARPAEntry> entry : transitionMatrix.entrySet()) {
+			StateSequence sequence = entry.getKey();
+			if(sequence.length() == 1) {
+				int i = dict.getIndex(sequence.get(0));
+				if(i != -1) {
+					unigramLogProb[i] = entry.getValue().getLog_prob();
+					unigramLogBo[i] = entry.getValue().getLog_bo();
+				}
+			}else if(sequence.length() == 2) {
+				int i = dict.getIndex(sequence.get(0));
+				if(i != -1 && dict.getIndex(sequence.get(1)) != -1)
+					bigramSize[i]++;
+			}else if(sequence.length() == 3) {
+				int h = dict.getIndex(sequence.get(0));
+				int i = dict.getIndex(sequence.get(1));
+				if(h != -1 && i != -1 && dict.getIndex(sequence.get(2)) != -1)
+					trigramSize[h * N + i]++;
+			}
+		}
+		
+		bigramTargets = new int[N][];
+		bigramLogProbs = new double[N][];
+		bigramLogBos = new double[N][];
+		for(int i = 0; i < N; i++) {
+			bigramTargets[i] = new int[bigramSize[i]];
+			bigramLogProbs[i] = new double[bigramSize[i]];
+			bigramLogBos[i] = new double[bigramSize[i]];
+			bigramSize[i] = 0;
+		}
+		
+		int[] emptyTargets = new int[0];
+		double[] emptyLogProbs = new double[0];
+		trigramTargets = new int[N * N][];
+		trigramLogProbs = new double[N * N][];
+		for(int hi = 0; hi < N * N; hi++) {
+			trigramTargets[hi] = trigramSize[hi] == 0 ? emptyTargets : new int[trigramSize[hi]];
+			trigramLogProbs[hi] = trigramSize[hi] == 0 ? emptyLogProbs : new double[trigramSize[hi]];
+			trigramSize[hi] = 0;
+		}
+		
+		for(Entry<StateSequence, ARPAEntry> entry : transitionMatrix.entrySet()) {
+			StateSequence sequence = entry.getKey();
+			if(sequence.length() == 2) {
+				int i = dict.getIndex(sequence.get(0));
+				int j = dict.getIndex(sequence.get(1));
+				if(i != -1 && j != -1) {
+					bigramTargets[i][bigramSize[i]] = j;
+					bigramLogBos[i][bigramSize[i]] = entry.getValue().getLog_bo();
+					bigramLogProbs[i][bigramSize[i]++] = entry.getValue().getLog_prob();
+				}
+			}else if(sequence.length() == 3) {
+				int h = dict.getIndex(sequence.get(0));
+				int i = dict.getIndex(sequence.get(1));
+				int j = dict.getIndex(sequence.get(2));
+				if(h != -1 && i != -1 && j != -1) {
+					int hi = h * N + i;
+					trigramTargets[hi][trigramSize[hi]] = j;
+					trigramLogProbs[hi][trigramSize[hi]++] = entry.getValue().getLog_prob();
+				}
+			}
+		}
+		
+		for(int i = 0; i < N; i++) {
+			int[] targets = bigramTargets[i].clone();
+			CommonUtils.sortByKey(bigramTargets[i], bigramLogProbs[i]);
+			CommonUtils.sortByKey(targets, bigramLogBos[i]);
+		}
+		
+		//按目标状态存放的二元转移，起点状态按升序遍历，各列表自然有序
+		int[] sourceSize = new int[N];
+		for(int i = 0; i < N; i++) {
+			for(int j : bigramTargets[i])
+				sourceSize[j]++;
+		}
+		bigramSources = new int[N][];
+		bigramSourceLogProbs = new double[N][];
+		for(int j = 0; j < N; j++) {
+			bigramSources[j] = new int[sourceSize[j]];
+			bigramSourceLogProbs[j] = new double[sourceSize[j]];
+			sourceSize[j] = 0;
+		}
+		for(int i = 0; i < N; i++) {
+			for(int n = 0; n < bigramTargets[i].length; n++) {
+				int j = bigramTargets[i][n];
+				bigramSources[j][sourceSize[j]] = i;
+				bigramSourceLogProbs[j][sourceSize[j]++] = bigramLogProbs[i][n];
+			}
+		}
+		for(int hi = 0; hi < N * N; hi++)
+			CommonUtils.sortByKey(trigramTargets[hi], trigramLogProbs[hi]);
+		
+		//发射概率
+		emissionObservations = new int[N][];
+		emissionLogProbs = new double[N][];
+		for(int i = 0; i < N; i++) {
+			EmissionProbEntry entry = emissionMatrix.get(dict.getState(i));
+			if(entry == null) {
+				emissionObservations[i] = new int[0];
+				emissionLogProbs[i] = new double[0];
+				unknownEmissionLogProb[i] = Double.NEGATIVE_INFINITY;
+				continue;
+			}
+			
+			int[] observations = new int[entry.size()];
+			double[] logProbs = new double[entry.size()];
+			int size = 0;
+			Iterator<Entry<Observation, Double>> iterator = entry.entryIterator();
+			while(iterator.hasNext()) {
+				Entry<Observation, Double> probEntry = iterator.next();
+				int t = dict.getIndex(probEntry.getKey());
+				if(t != -1) {
+					observations[size] = t;
+					logProbs[size++] = probEntry.getValue();
+				}
+			}
+			
+			emissionObservations[i] = Arrays.copyOf(observations, size);
+			emissionLogProbs[i] = Arrays.copyOf(logProbs, size);
+			CommonUtils.sortByKey(emissionObservations[i], emissionLogProbs[i]);
+			unknownEmissionLogProb[i] = entry.getEmissionLogProb(UNKNOWN);
+		}
+		
+		emissionColumns = new AtomicReferenceArray<>(dict.observationCount());
+		materializeEmissionColumns(EAGER_EMISSION_COLUMNS);
+	}
+	
+	/**
+	 * 立即计算估计频率最高的k个观测的发射向量。
+	 * 观测t的频率按sum_i P(i) * P(t | i)估计，P(i)取状态i的一元转移概率
+	 * @param k	计算发射向量的观测数量
+	 */
+	public void materializeEmissionColumns(int k) {
+		int N = dict.stateCount();
+		int M = dict.observationCount();
+		if(k >= M) {
+			for(int t = 0; t < M; t++)
+				emissionLogProbs(t);
+			
+			return;
+		}
+		
+		double[] frequency = new double[M];
+		for(int i = 0; i < N; i++) {
+			for(int n = 0; n < emissionObservations[i].length; n++)
+				frequency[emissionObservations[i][n]] += Math.pow(10, unigramLogProb[i] + emissionLogProbs[i][n]);
+		}
+		
+		//按估计频率从高到低选取前k个观测
+		Integer[] observations = new Integer[M];
+		for(int t = 0; t < M; t++)
+			observations[t] = t;
+		final double[] f = frequency;
+		Arrays.sort(observations, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(f[o2], f[o1]);
+			}
+		});
+		
+		for(int n = 0; n < k; n++)
+			emissionLogProbs(observations[n]);
+	}
+	
+	/**
+	 * 计算观测t的发射向量
+	 */
+	private double[] emissionColumn(int t) {
+		int N = dict.stateCount();
+		double[] column = new double[N];
+		for(int i = 0; i < N; i++)
+			column[i] = emissionLogProb(i, t);
+		
+		return column;
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		emissionColumns = new AtomicReferenceArray<>(dict.observationCount());
 	}
 	
 	@Override
@@ -100,20 +372,88 @@ public class HMModelBasedBO implements HMModel {
 			return transitionLogProb(_States);
 	}
 	
-	private double transitionLogProb(int[] start, int target) {
-		State[] states = new State[start.length + 1];
-		int i = 0;
-		for(i = 0; i < start.length; i++)
-			states[i] = dict.getState(start[i]);
-		
-		states[i] = dict.getState(target);
-				
-		return transitionLogProb(new StateSequence(states));
-	}
-
+	/**
+	 * 按索引返回1阶转移概率的对数，不存在的二元转移按oovTransitionProb的方式回退到一元转移，查询过程不创建对象
+	 */
 	@Override
 	public double transitionLogProb(int i, int j) {
-		return transitionLogProb(new int[]{i}, j);
+		int index = Arrays.binarySearch(bigramTargets[i], j);
+		if(index >= 0)
+			return bigramLogProbs[i][index];
+		
+		return unigramLogBo[i] + unigramLogProb[j];
+	}
+	
+	/**
+	 * 按索引返回2阶转移概率的对数，不存在的三元转移按oovTransitionProb的方式回退到二元转移，查询过程不创建对象
+	 * @param h	前一个历史状态的索引
+	 * @param i	后一个历史状态的索引
+	 * @param j	目标状态的索引
+	 * @return	转移概率的对数
+	 */
+	public double transitionLogProb(int h, int i, int j) {
+		int[] targets = trigramTargets[h * dict.stateCount() + i];
+		int index = Arrays.binarySearch(targets, j);
+		if(index >= 0)
+			return trigramLogProbs[h * dict.stateCount() + i][index];
+		
+		return bigramLogBo(h, i) + transitionLogProb(i, j);
+	}
+	
+	/**
+	 * 返回二元转移(h, i)的回退权重的对数，不存在的二元转移为0
+	 * @param h	起点状态的索引
+	 * @param i	目标状态的索引
+	 * @return	回退权重的对数
+	 */
+	double bigramLogBo(int h, int i) {
+		int index = Arrays.binarySearch(bigramTargets[h], i);
+		if(index >= 0)
+			return bigramLogBos[h][index];
+		
+		return 0;
+	}
+	
+	/**
+	 * 返回以状态j为目标的二元转移的起点状态索引（升序），调用者不应修改返回的数组
+	 */
+	int[] bigramSources(int j) {
+		return bigramSources[j];
+	}
+	
+	/**
+	 * 返回以状态j为目标的二元转移的概率的对数，与bigramSources(j)对应，调用者不应修改返回的数组
+	 */
+	double[] bigramSourceLogProbs(int j) {
+		return bigramSourceLogProbs[j];
+	}
+	
+	/**
+	 * 返回状态i的一元转移回退权重的对数，不存在二元转移(i, j)时transitionLogProb(i, j) = unigramLogBo(i) + unigramLogProb(j)
+	 */
+	double unigramLogBo(int i) {
+		return unigramLogBo[i];
+	}
+	
+	/**
+	 * 返回状态j的一元转移概率的对数
+	 */
+	double unigramLogProb(int j) {
+		return unigramLogProb[j];
+	}
+	
+	/**
+	 * 返回以状态h、i为历史的三元转移的目标状态索引（升序），调用者不应修改返回的数组
+	 */
+	int[] trigramTargets(int h, int i) {
+		return trigramTargets[h * dict.stateCount() + i];
+	}
+	
+	/**
+	 * 返回以状态h、i为历史的三元转移的概率的对数，与trigramTargets(h, i)对应，调用者不应修改返回的数组
+	 */
+	double[] trigramLogProbs(int h, int i) {
+		return trigramLogProbs[h * dict.stateCount() + i];
 	}
 	
 	@Override
@@ -124,12 +464,55 @@ public class HMModelBasedBO implements HMModel {
 		return emissionMatrix.get(state).getEmissionLogProb(UNKNOWN);
 	}
 	
+	/**
+	 * 按索引返回发射概率的对数，未登录观测（索引为-1）或未出现的发射返回该状态发射UNKNOWN的概率，查询过程不创建对象
+	 */
 	@Override
 	public double emissionLogProb(int state, int observation) {
-		State si = dict.getState(state);
-		Observation ot = (observation != -1) ? dict.getObservation(observation) : UNKNOWN;
+		if(observation != -1) {
+			int index = Arrays.binarySearch(emissionObservations[state], observation);
+			if(index >= 0)
+				return emissionLogProbs[state][index];
+		}
+		
+		return unknownEmissionLogProb[state];
+	}
+
+	/**
+	 * 返回观测t的发射向量，高频观测的发射向量在构造时计算，其余在首次查询时计算并缓存，所有未登录观测共享同一个向量
+	 */
+	@Override
+	public double[] emissionLogProbs(int t) {
+		if(t < 0 || t >= emissionColumns.length())
+			return unknownEmissionLogProb;
+		
+		double[] column = emissionColumns.get(t);
+		if(column == null) {
+			column = emissionColumn(t);
+			if(!emissionColumns.compareAndSet(t, null, column))
+				column = emissionColumns.get(t);
+		}
+		
+		return column;
+	}
+	
+	/**
+	 * 发射矩阵中存在的(状态, 观测)对，即按状态索引的发射表中出现的观测
+	 */
+	@Override
+	public int[] seenStates(int t) {
+		if(t < 0 || t >= dict.observationCount())
+			return new int[0];
+		
+		int N = dict.stateCount();
+		int[] states = new int[N];
+		int size = 0;
+		for(int i = 0; i < N; i++) {
+			if(Arrays.binarySearch(emissionObservations[i], t) >= 0)
+				states[size++] = i;
+		}
 		
-		return emissionLogProb(si, ot);
+		return Arrays.copyOf(states, size);
 	}
 
 	@Override
@@ -156,7 +539,7 @@ public class HMModelBasedBO implements HMModel {
 	
 	@Override
 	public double getLogPi(int state) {		
-		return getLogPi(dict.getState(state));
+		return logPi[state];
 	}
 	
 	@Override
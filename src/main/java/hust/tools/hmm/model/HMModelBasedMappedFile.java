@@ -0,0 +1,417 @@
+package hust.tools.hmm.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 基于内存映射文件的1阶隐式马尔科夫模型，初始概率、转移概率和发射概率直接从映射的文件中读取，打开模型时不构造概率表
+ *<li>模型文件由MappedFileHMMWriter写出，格式：魔数、版本、N、M、pi[N]、transition[N * N]、emission[(M + 1) * N]、隐藏状态表、观测状态表
+ *<li>其中emission[t * N + i]为状态i发射观测t的概率，第M行为未登录观测的发射概率，概率均为大端序的double，状态和观测为长度加UTF-8字节
+ *<li>打开模型时只读取状态和观测构造字典，概率留在操作系统的页缓存中，同一主机上打开同一文件的多个JVM共享这部分内存
+ *<li>概率区域的大小不能超过2GB，模型可被多个线程共享；两个映射模型相等当且仅当它们映射同一路径且文件头相同，比较时不读取概率区域
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedMappedFile implements HMModel {
+
+	/**
+	 * 版本序列号
+	 */
+	private static final long serialVersionUID = 5206236591371826466L;
+
+	/**
+	 * 映射模型文件的魔数
+	 */
+	public static final int MAGIC = 0x484D4D4D;
+
+	/**
+	 * 映射模型文件的版本
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * 文件头的字节数：魔数、版本、N、M
+	 */
+	public static final int HEADER_BYTES = 16;
+
+	private final Observation UNKNOWN = new StringObservation("UNKNOWN");
+
+	/**
+	 * 模型文件的路径，反序列化时重新映射
+	 */
+	private String pathname;
+
+	private transient Dictionary dict;
+
+	/**
+	 * 隐藏状态类型数量N
+	 */
+	private transient int statesCount;
+
+	/**
+	 * 观测状态类型数量M
+	 */
+	private transient int observationsCount;
+
+	/**
+	 * 映射的概率区域，依次为pi、transition和emission
+	 */
+	private transient DoubleBuffer data;
+
+	/**
+	 * 未登录观测的发射向量，打开模型时读出，所有未登录观测共享
+	 */
+	private transient double[] unknownEmission;
+
+	/**
+	 * 由映射区域构造的概率矩阵，首次查询时构造
+	 */
+	private transient HashMap<State, Double> pi;
+
+	private transient HashMap<StateSequence, ARPAEntry> transitionMatrix;
+
+	private transient HashMap<State, EmissionProbEntry> emissionMatrix;
+
+	public HMModelBasedMappedFile(String pathname) throws IOException {
+		this(new File(pathname));
+	}
+
+	/**
+	 * 映射并打开模型文件
+	 * @param file	MappedFileHMMWriter写出的模型文件
+	 * @throws IOException	文件格式不正确
+	 */
+	public HMModelBasedMappedFile(File file) throws IOException {
+		this.pathname = file.getPath();
+		open();
+	}
+
+	/**
+	 * 映射模型文件，读取文件头、未登录观测的发射向量和字典
+	 */
+	private void open() throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(pathname, "r"); FileChannel channel = raf.getChannel()) {
+			if(channel.size() > Integer.MAX_VALUE)
+				throw new IOException("映射模型文件超过2GB： " + pathname);
+
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if(buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+			throw new IOException("不是映射模型文件： " + pathname);
+
+		int version = buffer.getInt(4);
+		if(version != VERSION)
+			throw new IOException("不支持的映射模型版本： " + version);
+
+		int N = buffer.getInt(8);
+		int M = buffer.getInt(12);
+		long doubles = N + (long) N * N + (long) (M + 1) * N;
+		if(N < 0 || M < 0 || HEADER_BYTES + doubles * 8 > buffer.limit())
+			throw new IOException("映射模型文件不完整： " + pathname);
+
+		statesCount = N;
+		observationsCount = M;
+
+		buffer.position(HEADER_BYTES);
+		buffer.limit((int) (HEADER_BYTES + doubles * 8));
+		data = buffer.slice().asDoubleBuffer();
+
+		unknownEmission = new double[N];
+		int offset = emissionOffset(M);
+		for(int i = 0; i < N; i++)
+			unknownEmission[i] = data.get(offset + i);
+
+		buffer.limit(buffer.capacity());
+		buffer.position((int) (HEADER_BYTES + doubles * 8));
+		dict = new Dictionary();
+		for(int i = 0; i < N; i++)
+			dict.put(new StringState(readString(buffer)), i);
+		for(int t = 0; t < M; t++)
+			dict.put(new StringObservation(readString(buffer)), t);
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		if(buffer.remaining() < 4)
+			throw new IOException("映射模型文件不完整");
+
+		int length = buffer.getInt();
+		if(length < 0 || length > buffer.remaining())
+			throw new IOException("映射模型文件不完整");
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 返回观测t的发射向量在概率区域中的起始位置
+	 */
+	private int emissionOffset(int t) {
+		return statesCount + statesCount * statesCount + t * statesCount;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		open();
+	}
+
+	@Override
+	public double getLogPi(State state) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return 0;
+
+		return data.get(i);
+	}
+
+	@Override
+	public double getLogPi(int i) {
+		return data.get(i);
+	}
+
+	@Override
+	public double transitionLogProb(int i, int j) {
+		return data.get(statesCount + i * statesCount + j);
+	}
+
+	/**
+	 * 1阶模型只依赖前一个隐藏状态，start中更早的状态被忽略
+	 */
+	@Override
+	public double transitionLogProb(StateSequence start, State target) {
+		int j = dict.getIndex(target);
+		if(start.length() == 0 || j == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		int i = dict.getIndex(start.get(start.length() - 1));
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return transitionLogProb(i, j);
+	}
+
+	@Override
+	public double emissionLogProb(State state, Observation observation) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return emissionLogProb(i, getObservationIndex(observation));
+	}
+
+	@Override
+	public double emissionLogProb(int i, int t) {
+		if(t == -1)
+			return unknownEmission[i];
+
+		return data.get(emissionOffset(t) + i);
+	}
+
+	/**
+	 * 已登录观测的发射向量每次调用时从映射区域复制，不在堆中缓存
+	 */
+	@Override
+	public double[] emissionLogProbs(int t) {
+		if(t < 0 || t >= observationsCount)
+			return unknownEmission;
+
+		double[] column = new double[statesCount];
+		int offset = emissionOffset(t);
+		for(int i = 0; i < statesCount; i++)
+			column[i] = data.get(offset + i);
+
+		return column;
+	}
+
+	/**
+	 * 与未登录观测的发射概率不同的发射视为训练中出现过
+	 */
+	@Override
+	public int[] seenStates(int t) {
+		if(t < 0 || t >= observationsCount)
+			return new int[0];
+
+		int[] states = new int[statesCount];
+		int size = 0;
+		int offset = emissionOffset(t);
+		for(int i = 0; i < statesCount; i++) {
+			if(data.get(offset + i) != unknownEmission[i])
+				states[size++] = i;
+		}
+
+		return Arrays.copyOf(states, size);
+	}
+
+	@Override
+	public Observation[] getObservations() {
+		Set<Observation> set = dict.getObservations();
+
+		return set.toArray(new Observation[set.size()]);
+	}
+
+	@Override
+	public State[] getStates() {
+		Set<State> set = dict.getStates();
+
+		return set.toArray(new State[set.size()]);
+	}
+
+	@Override
+	public State getState(int index) {
+		return dict.getState(index);
+	}
+
+	@Override
+	public int statesCount() {
+		return statesCount;
+	}
+
+	@Override
+	public int observationsCount() {
+		return observationsCount;
+	}
+
+	@Override
+	public int getObservationIndex(Observation observation) {
+		if(!dict.containObservation(observation))
+			return dict.getIndex(UNKNOWN);
+
+		return dict.getIndex(observation);
+	}
+
+	@Override
+	public int getOrder() {
+		return 1;
+	}
+
+	@Override
+	public Dictionary getDict() {
+		return dict;
+	}
+
+	public String getPathname() {
+		return pathname;
+	}
+
+	/**
+	 * 由映射区域构造初始概率，首次调用时构造
+	 */
+	@Override
+	public synchronized HashMap<State, Double> getPi() {
+		if(pi == null) {
+			pi = new HashMap<>();
+			for(int i = 0; i < statesCount; i++)
+				pi.put(dict.getState(i), getLogPi(i));
+		}
+
+		return pi;
+	}
+
+	/**
+	 * 由映射区域构造展开后的1阶转移概率，不含回退结构，首次调用时构造
+	 */
+	@Override
+	public synchronized HashMap<StateSequence, ARPAEntry> getTransitionMatrix() {
+		if(transitionMatrix == null) {
+			transitionMatrix = new HashMap<>();
+			for(int i = 0; i < statesCount; i++) {
+				for(int j = 0; j < statesCount; j++) {
+					StateSequence sequence = new StateSequence(new State[]{dict.getState(i), dict.getState(j)});
+					transitionMatrix.put(sequence, new ARPAEntry(transitionLogProb(i, j), 0));
+				}
+			}
+		}
+
+		return transitionMatrix;
+	}
+
+	/**
+	 * 由映射区域构造发射概率，与未登录观测的发射概率相同的发射不单独保存，首次调用时构造
+	 */
+	@Override
+	public synchronized HashMap<State, EmissionProbEntry> getEmissionMatrix() {
+		if(emissionMatrix == null) {
+			emissionMatrix = new HashMap<>();
+			for(int i = 0; i < statesCount; i++) {
+				EmissionProbEntry entry = new EmissionProbEntry();
+				entry.put(UNKNOWN, unknownEmission[i]);
+				for(int t = 0; t < observationsCount; t++) {
+					double logProb = emissionLogProb(i, t);
+					if(logProb != unknownEmission[i])
+						entry.put(dict.getObservation(t), logProb);
+				}
+
+				emissionMatrix.put(dict.getState(i), entry);
+			}
+		}
+
+		return emissionMatrix;
+	}
+
+	/**
+	 * 克隆的模型与原模型共享只读的映射区域
+	 */
+	@Override
+	public HMModel clone() throws CloneNotSupportedException {
+		HMModelBasedMappedFile clone = (HMModelBasedMappedFile) super.clone();
+		clone.pi = null;
+		clone.transitionMatrix = null;
+		clone.emissionMatrix = null;
+
+		return clone;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((pathname == null) ? 0 : pathname.hashCode());
+		result = prime * result + statesCount;
+		result = prime * result + observationsCount;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		HMModelBasedMappedFile other = (HMModelBasedMappedFile) obj;
+		if (pathname == null) {
+			if (other.pathname != null)
+				return false;
+		} else if (!pathname.equals(other.pathname))
+			return false;
+		if (statesCount != other.statesCount)
+			return false;
+		if (observationsCount != other.observationsCount)
+			return false;
+		return true;
+	}
+}
@@ -0,0 +1,464 @@
+package hust.tools.hmm.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+
+/**
+ *<ul>
+ *<li>Description: 概率存放在堆外内存中的1阶隐式马尔科夫模型，用于观测类型很多的大模型，堆中只保留字典
+ *<li>初始概率、回退后的转移概率和未登录观测的发射概率按索引存放在直接缓冲区中
+ *<li>发射概率只保存训练中出现过的(状态, 观测)对，存放在以t * N + i为键、线性探测的开放寻址散列表中，键和值均为直接缓冲区中的基本类型，未出现的发射取未登录观测的发射概率
+ *<li>模型的大小不再影响垃圾回收的停顿时间，堆外内存在模型被回收时释放，模型可被多个线程共享
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedOffHeap implements HMModel {
+
+	/**
+	 * 版本序列号
+	 */
+	private static final long serialVersionUID = -6172739405813420467L;
+
+	/**
+	 * 散列表中空槽位的键
+	 */
+	private static final long EMPTY = -1;
+
+	/**
+	 * 散列表槽位数量的上限，保证键的缓冲区不超过2GB
+	 */
+	private static final int MAX_SLOTS = 1 << 27;
+
+	private final Observation UNKNOWN = new StringObservation("UNKNOWN");
+
+	private Dictionary dict;
+
+	/**
+	 * 隐藏状态类型数量N
+	 */
+	private int statesCount;
+
+	/**
+	 * 观测状态类型数量M
+	 */
+	private int observationsCount;
+
+	/**
+	 * 发射散列表中的条目数量
+	 */
+	private int emissionCount;
+
+	/**
+	 * 初始概率、转移概率和未登录观测的发射概率，依次为pi[N]、transition[N * N]、unknown[N]
+	 */
+	private DoubleBuffer dense;
+
+	/**
+	 * 未登录观测的发射向量，所有未登录观测共享
+	 */
+	private double[] unknownEmission;
+
+	/**
+	 * 发射散列表的键（t * N + i），空槽位为EMPTY
+	 */
+	private LongBuffer keys;
+
+	/**
+	 * 发射散列表的值，与键的槽位对应
+	 */
+	private DoubleBuffer values;
+
+	/**
+	 * 槽位数量减一，槽位数量为2的幂
+	 */
+	private int mask;
+
+	/**
+	 * 由训练好的1阶模型构造堆外模型，构造完成后源模型可被丢弃
+	 * @param model	训练好的模型
+	 */
+	public HMModelBasedOffHeap(HMModel model) {
+		if(model.getOrder() > 1)
+			throw new IllegalArgumentException("堆外模型只支持1阶模型： order = " + model.getOrder());
+
+		this.dict = model.getDict();
+		this.statesCount = model.statesCount();
+		this.observationsCount = model.observationsCount();
+
+		int N = statesCount;
+		allocateDense();
+		for(int i = 0; i < N; i++) {
+			dense.put(i, model.getLogPi(i));
+			for(int j = 0; j < N; j++)
+				dense.put(N + i * N + j, model.transitionLogProb(i, j));
+		}
+		double[] unknown = model.emissionLogProbs(-1);
+		for(int i = 0; i < N; i++)
+			dense.put(N + N * N + i, unknown[i]);
+		loadUnknownEmission();
+
+		int count = 0;
+		for(Entry<State, EmissionProbEntry> entry : model.getEmissionMatrix().entrySet())
+			count += entry.getValue().size();
+		allocateEmission(count);
+
+		for(Entry<State, EmissionProbEntry> entry : model.getEmissionMatrix().entrySet()) {
+			int i = dict.getIndex(entry.getKey());
+			if(i == -1)
+				continue;
+
+			Iterator<Entry<Observation, Double>> iterator = entry.getValue().entryIterator();
+			while(iterator.hasNext()) {
+				Entry<Observation, Double> probEntry = iterator.next();
+				int t = dict.getIndex(probEntry.getKey());
+				if(t != -1 && !probEntry.getKey().equals(UNKNOWN))
+					putEmission((long) t * N + i, probEntry.getValue());
+			}
+		}
+	}
+
+	private static ByteBuffer allocateDirect(long bytes) {
+		if(bytes > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("模型过大，单个缓冲区超过2GB");
+
+		return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+	}
+
+	private void allocateDense() {
+		int N = statesCount;
+		dense = allocateDirect((2L * N + (long) N * N) * 8).asDoubleBuffer();
+	}
+
+	private void loadUnknownEmission() {
+		int N = statesCount;
+		unknownEmission = new double[N];
+		for(int i = 0; i < N; i++)
+			unknownEmission[i] = dense.get(N + N * N + i);
+	}
+
+	/**
+	 * 分配能容纳count个条目的散列表，装载因子不超过0.5
+	 */
+	private void allocateEmission(int count) {
+		int slots = 2;
+		while(slots < 2L * count) {
+			if(slots == MAX_SLOTS)
+				throw new IllegalArgumentException("发射条目过多： " + count);
+			slots <<= 1;
+		}
+
+		mask = slots - 1;
+		keys = allocateDirect(slots * 8L).asLongBuffer();
+		values = allocateDirect(slots * 8L).asDoubleBuffer();
+		for(int slot = 0; slot < slots; slot++)
+			keys.put(slot, EMPTY);
+		emissionCount = 0;
+	}
+
+	/**
+	 * 64位整数的混合函数，使相邻的键分散到不同的槽位
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+
+		return (int) key;
+	}
+
+	private void putEmission(long key, double logProb) {
+		int slot = hash(key) & mask;
+		long current;
+		while((current = keys.get(slot)) != EMPTY && current != key)
+			slot = (slot + 1) & mask;
+
+		if(current == EMPTY) {
+			keys.put(slot, key);
+			emissionCount++;
+		}
+		values.put(slot, logProb);
+	}
+
+	/**
+	 * 查找发射散列表，没有该条目时返回默认值
+	 */
+	private double getEmission(long key, double defaultValue) {
+		int slot = hash(key) & mask;
+		long current;
+		while((current = keys.get(slot)) != EMPTY) {
+			if(current == key)
+				return values.get(slot);
+			slot = (slot + 1) & mask;
+		}
+
+		return defaultValue;
+	}
+
+	/**
+	 * 返回发射散列表中是否有该条目
+	 */
+	private boolean containsEmission(long key) {
+		int slot = hash(key) & mask;
+		long current;
+		while((current = keys.get(slot)) != EMPTY) {
+			if(current == key)
+				return true;
+			slot = (slot + 1) & mask;
+		}
+
+		return false;
+	}
+
+	@Override
+	public double getLogPi(State state) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return 0;
+
+		return dense.get(i);
+	}
+
+	@Override
+	public double getLogPi(int i) {
+		return dense.get(i);
+	}
+
+	@Override
+	public double transitionLogProb(int i, int j) {
+		return dense.get(statesCount + i * statesCount + j);
+	}
+
+	/**
+	 * 1阶模型只依赖前一个隐藏状态，start中更早的状态被忽略
+	 */
+	@Override
+	public double transitionLogProb(StateSequence start, State target) {
+		int j = dict.getIndex(target);
+		if(start.length() == 0 || j == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		int i = dict.getIndex(start.get(start.length() - 1));
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return transitionLogProb(i, j);
+	}
+
+	@Override
+	public double emissionLogProb(State state, Observation observation) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return emissionLogProb(i, getObservationIndex(observation));
+	}
+
+	@Override
+	public double emissionLogProb(int i, int t) {
+		if(t == -1)
+			return unknownEmission[i];
+
+		return getEmission((long) t * statesCount + i, unknownEmission[i]);
+	}
+
+	/**
+	 * 已登录观测的发射向量每次调用时由散列表构造，不在堆中缓存
+	 */
+	@Override
+	public double[] emissionLogProbs(int t) {
+		if(t < 0 || t >= observationsCount)
+			return unknownEmission;
+
+		double[] column = new double[statesCount];
+		long base = (long) t * statesCount;
+		for(int i = 0; i < statesCount; i++)
+			column[i] = getEmission(base + i, unknownEmission[i]);
+
+		return column;
+	}
+
+	/**
+	 * 发射散列表中的条目即训练中出现过的(状态, 观测)对
+	 */
+	@Override
+	public int[] seenStates(int t) {
+		if(t < 0 || t >= observationsCount)
+			return new int[0];
+
+		int[] states = new int[statesCount];
+		int size = 0;
+		long base = (long) t * statesCount;
+		for(int i = 0; i < statesCount; i++) {
+			if(containsEmission(base + i))
+				states[size++] = i;
+		}
+
+		return Arrays.copyOf(states, size);
+	}
+
+	@Override
+	public Observation[] getObservations() {
+		Set<Observation> set = dict.getObservations();
+
+		return set.toArray(new Observation[set.size()]);
+	}
+
+	@Override
+	public State[] getStates() {
+		Set<State> set = dict.getStates();
+
+		return set.toArray(new State[set.size()]);
+	}
+
+	@Override
+	public State getState(int index) {
+		return dict.getState(index);
+	}
+
+	@Override
+	public int statesCount() {
+		return statesCount;
+	}
+
+	@Override
+	public int observationsCount() {
+		return observationsCount;
+	}
+
+	@Override
+	public int getObservationIndex(Observation observation) {
+		if(!dict.containObservation(observation))
+			return dict.getIndex(UNKNOWN);
+
+		return dict.getIndex(observation);
+	}
+
+	@Override
+	public int getOrder() {
+		return 1;
+	}
+
+	@Override
+	public Dictionary getDict() {
+		return dict;
+	}
+
+	/**
+	 * 返回发射散列表中的条目数量
+	 * @return	训练中出现过的(状态, 观测)对的数量
+	 */
+	public int emissionCount() {
+		return emissionCount;
+	}
+
+	/**
+	 * 由堆外的概率表构造初始概率，每次调用重新构造，不在堆中保留
+	 */
+	@Override
+	public HashMap<State, Double> getPi() {
+		HashMap<State, Double> pi = new HashMap<>();
+		for(int i = 0; i < statesCount; i++)
+			pi.put(dict.getState(i), getLogPi(i));
+
+		return pi;
+	}
+
+	/**
+	 * 由堆外的概率表构造展开后的1阶转移概率，不含回退结构，每次调用重新构造，不在堆中保留
+	 */
+	@Override
+	public HashMap<StateSequence, ARPAEntry> getTransitionMatrix() {
+		HashMap<StateSequence, ARPAEntry> transitionMatrix = new HashMap<>();
+		for(int i = 0; i < statesCount; i++) {
+			for(int j = 0; j < statesCount; j++) {
+				StateSequence sequence = new StateSequence(new State[]{dict.getState(i), dict.getState(j)});
+				transitionMatrix.put(sequence, new ARPAEntry(transitionLogProb(i, j), 0));
+			}
+		}
+
+		return transitionMatrix;
+	}
+
+	/**
+	 * 由发射散列表构造发射概率，每次调用重新构造，不在堆中保留
+	 */
+	@Override
+	public HashMap<State, EmissionProbEntry> getEmissionMatrix() {
+		HashMap<State, EmissionProbEntry> emissionMatrix = new HashMap<>();
+		for(int i = 0; i < statesCount; i++) {
+			EmissionProbEntry entry = new EmissionProbEntry();
+			entry.put(UNKNOWN, unknownEmission[i]);
+			emissionMatrix.put(dict.getState(i), entry);
+		}
+
+		for(int slot = 0; slot <= mask; slot++) {
+			long key = keys.get(slot);
+			if(key != EMPTY) {
+				State state = dict.getState((int) (key % statesCount));
+				Observation observation = dict.getObservation((int) (key / statesCount));
+				emissionMatrix.get(state).put(observation, values.get(slot));
+			}
+		}
+
+		return emissionMatrix;
+	}
+
+	/**
+	 * 克隆的模型与原模型共享堆外的概率表，两者均不修改概率表
+	 */
+	@Override
+	public HMModel clone() throws CloneNotSupportedException {
+		return (HMModel) super.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((dict == null) ? 0 : dict.hashCode());
+		result = prime * result + dense.hashCode();
+		result = prime * result + emissionCount;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		HMModelBasedOffHeap other = (HMModelBasedOffHeap) obj;
+		if (dict == null) {
+			if (other.dict != null)
+				return false;
+		} else if (!dict.equals(other.dict))
+			return false;
+		if (!dense.equals(other.dense))
+			return false;
+		if (emissionCount != other.emissionCount)
+			return false;
+		for(int slot = 0; slot <= mask; slot++) {
+			long key = keys.get(slot);
+			if(key != EMPTY && Double.compare(values.get(slot), other.getEmission(key, Double.NaN)) != 0)
+				return false;
+		}
+		return true;
+	}
+}
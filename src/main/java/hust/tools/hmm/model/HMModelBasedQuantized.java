@@ -0,0 +1,367 @@
+package hust.tools.hmm.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+import hust.tools.hmm.utils.Dictionary;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+
+/**
+ *<ul>
+ *<li>Description: 概率对数量化存放的1阶隐式马尔科夫模型，由训练好的模型编译得到，解码器通过HMModel接口使用
+ *<li>初始概率、回退后的转移概率和发射概率分别为一张QuantizedTable，精度为32时存为float，为16或8时存为各表码本的编码
+ *<li>发射表按观测存放，emission[t * N + i]为状态i发射观测t的概率，第M行为未登录观测的发射概率，状态数不超过码本大小的一半时该行在码本中原样保留
+ *<li>与HMModelBasedArray相比，概率表的内存占用约为其1/2（float）、1/4（16位）或1/8（8位），另加各表至多256或65536项的码本，码本的开销只在小表中明显
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedQuantized implements HMModel {
+
+	/**
+	 * 版本序列号
+	 */
+	private static final long serialVersionUID = 2470419848837563093L;
+
+	private final Observation UNKNOWN = new StringObservation("UNKNOWN");
+
+	private Dictionary dict;
+
+	/**
+	 * 隐藏状态类型数量N
+	 */
+	private int statesCount;
+
+	/**
+	 * 观测状态类型数量M
+	 */
+	private int observationsCount;
+
+	private QuantizedTable pi;
+
+	private QuantizedTable transition;
+
+	private QuantizedTable emission;
+
+	/**
+	 * 未登录观测的发射向量，所有未登录观测共享
+	 */
+	private double[] unknownEmission;
+
+	/**
+	 * 按给定精度编译训练好的1阶模型，编译完成后源模型可被丢弃
+	 * @param model	训练好的模型
+	 * @param bits	精度，8、16或32（float）
+	 */
+	public HMModelBasedQuantized(HMModel model, int bits) {
+		if(model.getOrder() > 1)
+			throw new IllegalArgumentException("量化模型只支持1阶模型： order = " + model.getOrder());
+
+		int N = model.statesCount();
+		int M = model.observationsCount();
+
+		double[] pi = new double[N];
+		double[] transition = new double[N * N];
+		double[] emission = new double[(M + 1) * N];
+		for(int i = 0; i < N; i++) {
+			pi[i] = model.getLogPi(i);
+			for(int j = 0; j < N; j++)
+				transition[i * N + j] = model.transitionLogProb(i, j);
+		}
+
+		for(int t = 0; t < M; t++)
+			System.arraycopy(model.emissionLogProbs(t), 0, emission, t * N, N);
+		double[] unknown = model.emissionLogProbs(-1);
+		System.arraycopy(unknown, 0, emission, M * N, N);
+
+		//未出现的发射都取未登录观测的发射概率，这些值原样保留，码本留给出现过的发射
+		init(model.getDict(), N, M, QuantizedTable.quantize(pi, bits), QuantizedTable.quantize(transition, bits), QuantizedTable.quantize(emission, bits, unknown));
+	}
+
+	/**
+	 * 由量化的表构造模型，用于读取量化模型文件
+	 * @param dict			状态和观测的索引
+	 * @param pi			初始概率表，N个条目
+	 * @param transition	转移概率表，N * N个条目
+	 * @param emission		发射概率表，(M + 1) * N个条目
+	 */
+	public HMModelBasedQuantized(Dictionary dict, QuantizedTable pi, QuantizedTable transition, QuantizedTable emission) {
+		int N = dict.stateCount();
+		int M = dict.observationCount();
+		if(pi.size() != N || transition.size() != N * N || emission.size() != (M + 1) * N)
+			throw new IllegalArgumentException("概率表的大小与字典不一致");
+
+		init(dict, N, M, pi, transition, emission);
+	}
+
+	private void init(Dictionary dict, int N, int M, QuantizedTable pi, QuantizedTable transition, QuantizedTable emission) {
+		this.dict = dict;
+		this.statesCount = N;
+		this.observationsCount = M;
+		this.pi = pi;
+		this.transition = transition;
+		this.emission = emission;
+
+		unknownEmission = new double[N];
+		for(int i = 0; i < N; i++)
+			unknownEmission[i] = emission.get(M * N + i);
+	}
+
+	@Override
+	public double getLogPi(State state) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return 0;
+
+		return pi.get(i);
+	}
+
+	@Override
+	public double getLogPi(int i) {
+		return pi.get(i);
+	}
+
+	@Override
+	public double transitionLogProb(int i, int j) {
+		return transition.get(i * statesCount + j);
+	}
+
+	/**
+	 * 1阶模型只依赖前一个隐藏状态，start中更早的状态被忽略
+	 */
+	@Override
+	public double transitionLogProb(StateSequence start, State target) {
+		int j = dict.getIndex(target);
+		if(start.length() == 0 || j == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		int i = dict.getIndex(start.get(start.length() - 1));
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return transitionLogProb(i, j);
+	}
+
+	@Override
+	public double emissionLogProb(State state, Observation observation) {
+		int i = dict.getIndex(state);
+		if(i == -1)
+			return Double.NEGATIVE_INFINITY;
+
+		return emissionLogProb(i, getObservationIndex(observation));
+	}
+
+	@Override
+	public double emissionLogProb(int i, int t) {
+		if(t == -1)
+			return unknownEmission[i];
+
+		return emission.get(t * statesCount + i);
+	}
+
+	/**
+	 * 已登录观测的发射向量每次调用时解码，不缓存
+	 */
+	@Override
+	public double[] emissionLogProbs(int t) {
+		if(t < 0 || t >= observationsCount)
+			return unknownEmission;
+
+		double[] column = new double[statesCount];
+		int offset = t * statesCount;
+		for(int i = 0; i < statesCount; i++)
+			column[i] = emission.get(offset + i);
+
+		return column;
+	}
+
+	/**
+	 * 量化后与未登录观测的发射概率不同的发射视为训练中出现过
+	 */
+	@Override
+	public int[] seenStates(int t) {
+		if(t < 0 || t >= observationsCount)
+			return new int[0];
+
+		int[] states = new int[statesCount];
+		int size = 0;
+		int offset = t * statesCount;
+		for(int i = 0; i < statesCount; i++) {
+			if(emission.get(offset + i) != unknownEmission[i])
+				states[size++] = i;
+		}
+
+		return Arrays.copyOf(states, size);
+	}
+
+	@Override
+	public Observation[] getObservations() {
+		Set<Observation> set = dict.getObservations();
+
+		return set.toArray(new Observation[set.size()]);
+	}
+
+	@Override
+	public State[] getStates() {
+		Set<State> set = dict.getStates();
+
+		return set.toArray(new State[set.size()]);
+	}
+
+	@Override
+	public State getState(int index) {
+		return dict.getState(index);
+	}
+
+	@Override
+	public int statesCount() {
+		return statesCount;
+	}
+
+	@Override
+	public int observationsCount() {
+		return observationsCount;
+	}
+
+	@Override
+	public int getObservationIndex(Observation observation) {
+		if(!dict.containObservation(observation))
+			return dict.getIndex(UNKNOWN);
+
+		return dict.getIndex(observation);
+	}
+
+	@Override
+	public int getOrder() {
+		return 1;
+	}
+
+	@Override
+	public Dictionary getDict() {
+		return dict;
+	}
+
+	public QuantizedTable getPiTable() {
+		return pi;
+	}
+
+	public QuantizedTable getTransitionTable() {
+		return transition;
+	}
+
+	public QuantizedTable getEmissionTable() {
+		return emission;
+	}
+
+	/**
+	 * 返回量化精度
+	 * @return	8、16或32
+	 */
+	public int getBits() {
+		return emission.getBits();
+	}
+
+	/**
+	 * 返回三张概率表（含码本）占用的字节数
+	 * @return	字节数
+	 */
+	public long sizeInBytes() {
+		return pi.sizeInBytes() + transition.sizeInBytes() + emission.sizeInBytes();
+	}
+
+	/**
+	 * 由量化的表构造初始概率，每次调用重新构造
+	 */
+	@Override
+	public HashMap<State, Double> getPi() {
+		HashMap<State, Double> pi = new HashMap<>();
+		for(int i = 0; i < statesCount; i++)
+			pi.put(dict.getState(i), getLogPi(i));
+
+		return pi;
+	}
+
+	/**
+	 * 由量化的表构造展开后的1阶转移概率，不含回退结构，每次调用重新构造
+	 */
+	@Override
+	public HashMap<StateSequence, ARPAEntry> getTransitionMatrix() {
+		HashMap<StateSequence, ARPAEntry> transitionMatrix = new HashMap<>();
+		for(int i = 0; i < statesCount; i++) {
+			for(int j = 0; j < statesCount; j++) {
+				StateSequence sequence = new StateSequence(new State[]{dict.getState(i), dict.getState(j)});
+				transitionMatrix.put(sequence, new ARPAEntry(transitionLogProb(i, j), 0));
+			}
+		}
+
+		return transitionMatrix;
+	}
+
+	/**
+	 * 由量化的表构造发射概率，量化后与未登录观测的发射概率相同的发射不单独保存，每次调用重新构造
+	 */
+	@Override
+	public HashMap<State, EmissionProbEntry> getEmissionMatrix() {
+		HashMap<State, EmissionProbEntry> emissionMatrix = new HashMap<>();
+		for(int i = 0; i < statesCount; i++) {
+			EmissionProbEntry entry = new EmissionProbEntry();
+			entry.put(UNKNOWN, unknownEmission[i]);
+			for(int t = 0; t < observationsCount; t++) {
+				double logProb = emissionLogProb(i, t);
+				if(logProb != unknownEmission[i])
+					entry.put(dict.getObservation(t), logProb);
+			}
+
+			emissionMatrix.put(dict.getState(i), entry);
+		}
+
+		return emissionMatrix;
+	}
+
+	/**
+	 * 克隆的模型与原模型共享只读的概率表
+	 */
+	@Override
+	public HMModel clone() throws CloneNotSupportedException {
+		return (HMModel) super.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((dict == null) ? 0 : dict.hashCode());
+		result = prime * result + pi.hashCode();
+		result = prime * result + transition.hashCode();
+		result = prime * result + emission.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		HMModelBasedQuantized other = (HMModelBasedQuantized) obj;
+		if (dict == null) {
+			if (other.dict != null)
+				return false;
+		} else if (!dict.equals(other.dict))
+			return false;
+		if (!pi.equals(other.pi))
+			return false;
+		if (!transition.equals(other.transition))
+			return false;
+		if (!emission.equals(other.emission))
+			return false;
+		return true;
+	}
+}
@@ -0,0 +1,292 @@
+package hust.tools.hmm.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.State;
+
+/**
+ *<ul>
+ *<li>Description: 固定延迟的在线维特比解码，用于没有句子边界的1阶HMM观测流
+ *<li>观测逐个推入，所有存活路径在某时刻之前汇合为同一条路径时，该时刻及之前的隐藏状态即已确定并输出
+ *<li>未确定的时刻超过lag个时，按当前得分最高的路径强制确定最早的时刻，回退路径保存在容量为lag+1的环形缓冲区中，内存占用与观测流长度无关
+ *<li>强制确定的状态不会再改变，此后输出的状态不保证与之构成全局最优路径
+ *<li>解码器保存观测流的解码状态，不能被多个线程共享
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class OnlineViterbi {
+
+	/**
+	 * HMM模型
+	 */
+	private HMModel model;
+
+	/**
+	 * 标注词典，为null时每个时刻扩展全部隐藏状态
+	 */
+	private TagDictionary tagDictionary;
+
+	/**
+	 * 全部隐藏状态的索引
+	 */
+	private int[] allStates;
+
+	/**
+	 * 未确定的时刻数量的上限
+	 */
+	private int lag;
+
+	/**
+	 * 环形缓冲区的容量（时刻数）
+	 */
+	private int capacity;
+
+	/**
+	 * 回退路径的环形缓冲区，psi[(t % capacity) * N + j]为t时刻状态j在t-1时刻的前一个状态
+	 */
+	private int[] psi;
+
+	/**
+	 * 当前时刻的维特比变量（已减去最大值，避免长观测流的得分无限减小）
+	 */
+	private double[] delta;
+
+	/**
+	 * 计算下一时刻维特比变量的缓冲区
+	 */
+	private double[] next;
+
+	/**
+	 * 当前时刻允许的隐藏状态，为null时下一个观测为新观测流的开始
+	 */
+	private int[] prevStates;
+
+	/**
+	 * 已推入的观测数量
+	 */
+	private long time;
+
+	/**
+	 * 第一个未确定的时刻
+	 */
+	private long start;
+
+	/**
+	 * 检查路径汇合时使用的状态集合及其标记
+	 */
+	private int[] survivors;
+
+	private int[] predecessors;
+
+	private int[] marks;
+
+	private int mark;
+
+	/**
+	 * 回溯路径的缓冲区
+	 */
+	private int[] path;
+
+	public OnlineViterbi(HMModel model, int lag) {
+		this(model, lag, null);
+	}
+
+	/**
+	 * @param model			HMM模型
+	 * @param lag			未确定的时刻数量的上限，至少为1
+	 * @param tagDictionary	标注词典，为null时不限制隐藏状态
+	 */
+	public OnlineViterbi(HMModel model, int lag, TagDictionary tagDictionary) {
+		if(lag < 1)
+			throw new IllegalArgumentException("延迟应为正整数： lag = " + lag);
+
+		this.model = model;
+		this.lag = lag;
+		this.tagDictionary = tagDictionary;
+
+		int N = model.statesCount();
+		allStates = new int[N];
+		for(int i = 0; i < N; i++)
+			allStates[i] = i;
+
+		capacity = lag + 1;
+		psi = new int[capacity * N];
+		delta = new double[N];
+		next = new double[N];
+		survivors = new int[N];
+		predecessors = new int[N];
+		marks = new int[N];
+		path = new int[capacity];
+	}
+
+	/**
+	 * 推入一个观测，返回因此而确定的隐藏状态
+	 * @param observation	观测
+	 * @return				按时刻顺序新确定的隐藏状态，可能为空
+	 */
+	public List<State> push(Observation observation) {
+		int N = model.statesCount();
+		int index = model.getObservationIndex(observation);
+		int[] states = tagDictionary == null ? allStates : tagDictionary.getStates(index);
+		double[] emissions = model.emissionLogProbs(index);
+
+		if(states.length < N)
+			Arrays.fill(next, Double.NEGATIVE_INFINITY);
+
+		double max = Double.NEGATIVE_INFINITY;
+		if(prevStates == null) {
+			//新的观测流
+			for(int j : states) {
+				next[j] = model.getLogPi(j) + emissions[j];
+				max = Math.max(max, next[j]);
+			}
+		} else {
+			int slot = (int) (time % capacity) * N;
+			for(int j : states) {
+				double maxDelta = Double.NEGATIVE_INFINITY;
+				int max_psi = prevStates[0];
+				for(int i : prevStates) {
+					double currentDelta = delta[i] + model.transitionLogProb(i, j);
+					if(maxDelta < currentDelta) {
+						maxDelta = currentDelta;
+						max_psi = i;
+					}
+				}
+
+				next[j] = maxDelta + emissions[j];
+				psi[slot + j] = max_psi;
+				max = Math.max(max, next[j]);
+			}
+		}
+
+		//归一化，只保留得分的相对大小
+		if(max != Double.NEGATIVE_INFINITY) {
+			for(int j : states)
+				next[j] -= max;
+		}
+
+		double[] tmp = delta;
+		delta = next;
+		next = tmp;
+		prevStates = states;
+		time++;
+
+		List<State> result = new ArrayList<>();
+		emitConverged(result);
+
+		//未确定的时刻超过lag个时，按当前最优路径确定最早的时刻
+		if(time - start > lag)
+			emit(bestState(), time - 1, start, result);
+
+		return result;
+	}
+
+	/**
+	 * 结束当前观测流，按当前最优路径确定所有未确定的时刻，此后推入的观测作为新观测流的开始
+	 * @return	按时刻顺序新确定的隐藏状态
+	 */
+	public List<State> flush() {
+		List<State> result = new ArrayList<>();
+		if(prevStates != null && time > start)
+			emit(bestState(), time - 1, time - 1, result);
+
+		reset();
+
+		return result;
+	}
+
+	/**
+	 * 丢弃未确定的时刻，此后推入的观测作为新观测流的开始
+	 */
+	public void reset() {
+		prevStates = null;
+		time = 0;
+		start = 0;
+	}
+
+	/**
+	 * 返回未确定的时刻数量
+	 * @return	未确定的时刻数量
+	 */
+	public int getPending() {
+		return (int) (time - start);
+	}
+
+	/**
+	 * 返回未确定的时刻数量的上限
+	 * @return	延迟
+	 */
+	public int getLag() {
+		return lag;
+	}
+
+	/**
+	 * 从当前时刻的所有存活状态同时回溯，找到所有路径汇合的最晚时刻，输出该时刻及之前未确定的状态
+	 */
+	private void emitConverged(List<State> result) {
+		int N = model.statesCount();
+		int count = 0;
+		for(int j : prevStates) {
+			if(delta[j] != Double.NEGATIVE_INFINITY)
+				survivors[count++] = j;
+		}
+
+		long t = time - 1;
+		while(count > 1 && t > start) {
+			int slot = (int) (t % capacity) * N;
+			mark++;
+			int size = 0;
+			for(int n = 0; n < count; n++) {
+				int i = psi[slot + survivors[n]];
+				if(marks[i] != mark) {
+					marks[i] = mark;
+					predecessors[size++] = i;
+				}
+			}
+
+			int[] swap = survivors;
+			survivors = predecessors;
+			predecessors = swap;
+			count = size;
+			t--;
+		}
+
+		if(count == 1)
+			emit(survivors[0], t, t, result);
+	}
+
+	/**
+	 * 从from时刻的状态state回溯，输出[start, to]时刻的状态并将这些时刻标记为已确定
+	 */
+	private void emit(int state, long from, long to, List<State> result) {
+		int N = model.statesCount();
+		int length = (int) (from - start + 1);
+		path[length - 1] = state;
+		for(int n = length - 1; n > 0; n--)
+			path[n - 1] = psi[(int) ((start + n) % capacity) * N + path[n]];
+
+		int end = (int) (to - start + 1);
+		for(int n = 0; n < end; n++)
+			result.add(model.getState(path[n]));
+
+		start = to + 1;
+	}
+
+	/**
+	 * 返回当前时刻得分最高的状态
+	 */
+	private int bestState() {
+		int best = prevStates[0];
+		for(int j : prevStates) {
+			if(delta[best] < delta[j])
+				best = j;
+		}
+
+		return best;
+	}
+}
@@ -0,0 +1,290 @@
+package hust.tools.hmm.model;
+
+import java.util.Arrays;
+
+/**
+ *<ul>
+ *<li>Description: 量化的概率对数表，按精度以float或8/16位编码保存，编码为该表码本的下标
+ *<li>码本由表中不同的有限值按等数量分箱得到，每箱取均值，重复出现的值只计一次，不会因为大量重复的回退值占满码本；不同的有限值不超过码本大小时码本即为这些值，量化无损
+ *<li>指定需要保留的值（如未登录观测的发射概率）在码本中原样保留，其余的值再分箱；负无穷单独占用码本的最后一个编码
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class QuantizedTable {
+
+	/**
+	 * 精度，8、16或32（float）
+	 */
+	private int bits;
+
+	private float[] floats;
+
+	private short[] shorts;
+
+	private byte[] bytes;
+
+	/**
+	 * 码本，精度为32时为null
+	 */
+	private double[] codebook;
+
+	public QuantizedTable(float[] floats) {
+		this.bits = 32;
+		this.floats = floats;
+	}
+
+	public QuantizedTable(double[] codebook, short[] codes) {
+		this.bits = 16;
+		this.codebook = codebook;
+		this.shorts = codes;
+	}
+
+	public QuantizedTable(double[] codebook, byte[] codes) {
+		this.bits = 8;
+		this.codebook = codebook;
+		this.bytes = codes;
+	}
+
+	/**
+	 * 按给定精度量化概率对数表
+	 * @param values	概率对数
+	 * @param bits		精度，8、16或32（float）
+	 * @return			量化的表
+	 */
+	public static QuantizedTable quantize(double[] values, int bits) {
+		return quantize(values, bits, new double[0]);
+	}
+
+	/**
+	 * 按给定精度量化概率对数表，exact中的值在码本中原样保留，表中等于这些值的条目量化无损
+	 * @param values	概率对数
+	 * @param bits		精度，8、16或32（float）
+	 * @param exact		需要原样保留的值，其中不同的有限值超过码本大小的一半时不单独保留，与其他值一起分箱
+	 * @return			量化的表
+	 */
+	public static QuantizedTable quantize(double[] values, int bits, double[] exact) {
+		if(bits == 32) {
+			float[] floats = new float[values.length];
+			for(int n = 0; n < values.length; n++)
+				floats[n] = (float) values[n];
+
+			return new QuantizedTable(floats);
+		}
+
+		if(bits != 8 && bits != 16)
+			throw new IllegalArgumentException("不支持的量化精度： bits = " + bits);
+
+		double[] codebook = codebook(values, exact, 1 << bits);
+		if(bits == 16) {
+			short[] codes = new short[values.length];
+			for(int n = 0; n < values.length; n++)
+				codes[n] = (short) encode(codebook, values[n]);
+
+			return new QuantizedTable(codebook, codes);
+		}
+
+		byte[] codes = new byte[values.length];
+		for(int n = 0; n < values.length; n++)
+			codes[n] = (byte) encode(codebook, values[n]);
+
+		return new QuantizedTable(codebook, codes);
+	}
+
+	/**
+	 * 返回升序排列的不同的有限值
+	 */
+	private static double[] distinctFinite(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+
+		int size = 0;
+		for(int n = 0; n < sorted.length; n++) {
+			if(sorted[n] == Double.NEGATIVE_INFINITY || Double.isNaN(sorted[n]))
+				continue;
+			if(size == 0 || sorted[n] != sorted[size - 1])
+				sorted[size++] = sorted[n];
+		}
+
+		return Arrays.copyOf(sorted, size);
+	}
+
+	private static boolean containsNegativeInfinity(double[] values) {
+		for(double value : values) {
+			if(value == Double.NEGATIVE_INFINITY)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * 构造码本，码本中的有限值升序排列，存在负无穷时放在最后
+	 * @param values	概率对数
+	 * @param exact		需要原样保留的值
+	 * @param levels	码本大小的上限
+	 */
+	private static double[] codebook(double[] values, double[] exact, int levels) {
+		boolean infinite = containsNegativeInfinity(values) || containsNegativeInfinity(exact);
+		if(infinite)
+			levels--;
+
+		double[] distinct = distinctFinite(values);
+		double[] kept = distinctFinite(exact);
+		if(kept.length > levels / 2)
+			kept = new double[0];
+
+		double[] finite;
+		if(distinct.length <= levels) {
+			finite = distinct;
+		} else {
+			//去掉保留的值后，对其余不同的值等数量分箱，每箱取均值
+			double[] rest = new double[distinct.length];
+			int count = 0;
+			for(double value : distinct) {
+				if(Arrays.binarySearch(kept, value) < 0)
+					rest[count++] = value;
+			}
+
+			int bins = levels - kept.length;
+			finite = Arrays.copyOf(kept, levels);
+			for(int k = 0; k < bins; k++) {
+				int from = (int) ((long) count * k / bins);
+				int to = (int) ((long) count * (k + 1) / bins);
+				double sum = 0;
+				for(int n = from; n < to; n++)
+					sum += rest[n];
+				finite[kept.length + k] = sum / (to - from);
+			}
+			Arrays.sort(finite);
+		}
+
+		double[] codebook = Arrays.copyOf(finite, finite.length + (infinite ? 1 : 0));
+		if(infinite)
+			codebook[codebook.length - 1] = Double.NEGATIVE_INFINITY;
+
+		return codebook;
+	}
+
+	/**
+	 * 返回码本中与给定值最接近的编码
+	 */
+	private static int encode(double[] codebook, double value) {
+		int finite = codebook.length;
+		if(finite > 0 && codebook[finite - 1] == Double.NEGATIVE_INFINITY) {
+			if(value == Double.NEGATIVE_INFINITY)
+				return finite - 1;
+			finite--;
+		}
+
+		int index = Arrays.binarySearch(codebook, 0, finite, value);
+		if(index >= 0)
+			return index;
+
+		int upper = -index - 1;
+		if(upper == 0)
+			return 0;
+		if(upper == finite)
+			return finite - 1;
+
+		return value - codebook[upper - 1] <= codebook[upper] - value ? upper - 1 : upper;
+	}
+
+	/**
+	 * 返回下标为n的概率对数
+	 * @param n	下标
+	 * @return	概率对数
+	 */
+	public double get(int n) {
+		switch (bits) {
+		case 8:
+			return codebook[bytes[n] & 0xFF];
+		case 16:
+			return codebook[shorts[n] & 0xFFFF];
+		default:
+			return floats[n];
+		}
+	}
+
+	/**
+	 * 返回下标为n的编码，精度为32时无编码
+	 * @param n	下标
+	 * @return	码本的下标
+	 */
+	public int getCode(int n) {
+		switch (bits) {
+		case 8:
+			return bytes[n] & 0xFF;
+		case 16:
+			return shorts[n] & 0xFFFF;
+		default:
+			throw new UnsupportedOperationException("float表没有编码");
+		}
+	}
+
+	public int getBits() {
+		return bits;
+	}
+
+	public double[] getCodebook() {
+		return codebook;
+	}
+
+	/**
+	 * 返回表的条目数量
+	 * @return	条目数量
+	 */
+	public int size() {
+		switch (bits) {
+		case 8:
+			return bytes.length;
+		case 16:
+			return shorts.length;
+		default:
+			return floats.length;
+		}
+	}
+
+	/**
+	 * 返回编码和码本占用的字节数
+	 * @return	字节数
+	 */
+	public long sizeInBytes() {
+		return (long) size() * bits / 8 + (codebook == null ? 0 : codebook.length * 8L);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + bits;
+		result = prime * result + Arrays.hashCode(codebook);
+		result = prime * result + Arrays.hashCode(floats);
+		result = prime * result + Arrays.hashCode(shorts);
+		result = prime * result + Arrays.hashCode(bytes);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		QuantizedTable other = (QuantizedTable) obj;
+		if (bits != other.bits)
+			return false;
+		if (!Arrays.equals(codebook, other.codebook))
+			return false;
+		if (!Arrays.equals(floats, other.floats))
+			return false;
+		if (!Arrays.equals(shorts, other.shorts))
+			return false;
+		if (!Arrays.equals(bytes, other.bytes))
+			return false;
+		return true;
+	}
+}
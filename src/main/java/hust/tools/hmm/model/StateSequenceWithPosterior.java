@@ -0,0 +1,85 @@
+package hust.tools.hmm.model;
+
+import hust.tools.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 后验解码的结果，包括最大后验隐藏序列、每个时刻各隐藏状态的后验概率和观测序列概率的自然对数
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class StateSequenceWithPosterior {
+
+	private StateSequence sequence;
+
+	/**
+	 * posteriors[t][i] = P(i(t) = S(i) | O, HMM)
+	 */
+	private double[][] posteriors;
+
+	private double logProb;
+
+	public StateSequenceWithPosterior(StateSequence sequence, double[][] posteriors, double logProb) {
+		this.sequence = sequence;
+		this.posteriors = posteriors;
+		this.logProb = logProb;
+	}
+
+	/**
+	 * 返回每个时刻后验概率最大的隐藏状态组成的序列
+	 * @return	最大后验隐藏序列
+	 */
+	public StateSequence getStateSequence() {
+		return sequence;
+	}
+
+	/**
+	 * 返回t时刻i状态的后验概率
+	 * @param t	观测序列的时刻
+	 * @param i	隐藏状态的索引
+	 * @return	后验概率
+	 */
+	public double getPosterior(int t, int i) {
+		return posteriors[t][i];
+	}
+
+	/**
+	 * 返回t时刻各隐藏状态的后验概率分布
+	 * @param t	观测序列的时刻
+	 * @return	后验概率分布，下标为隐藏状态的索引
+	 */
+	public double[] getPosteriors(int t) {
+		return posteriors[t];
+	}
+
+	public double[][] getPosteriors() {
+		return posteriors;
+	}
+
+	/**
+	 * 返回t时刻最大后验隐藏状态的后验概率，可作为该时刻标注的置信度
+	 * @param t	观测序列的时刻
+	 * @return	最大后验概率
+	 */
+	public double getConfidence(int t) {
+		double max = 0;
+		for(double posterior : posteriors[t])
+			max = Math.max(max, posterior);
+
+		return max;
+	}
+
+	/**
+	 * 返回观测序列概率的自然对数
+	 * @return	观测序列概率的自然对数
+	 */
+	public double getLogProb() {
+		return logProb;
+	}
+
+	public String toString() {
+		return sequence.toString();
+	}
+}
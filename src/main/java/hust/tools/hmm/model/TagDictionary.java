@@ -0,0 +1,75 @@
+package hust.tools.hmm.model;
+
+import java.util.Arrays;
+
+/**
+ *<ul>
+ *<li>Description: 标注词典，记录每个已登录观测在训练语料中出现过的隐藏状态（即发射矩阵中存在的(状态, 观测)对）
+ *<li>解码器使用标注词典时，每个时刻只扩展该时刻观测允许的隐藏状态，未登录观测允许全部隐藏状态
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class TagDictionary {
+
+	/**
+	 * allowed[t]为观测t允许的隐藏状态索引（升序）
+	 */
+	private int[][] allowed;
+
+	/**
+	 * 全部隐藏状态的索引，用于未登录观测
+	 */
+	private int[] allStates;
+
+	/**
+	 * 由模型中出现过的(状态, 观测)对构造标注词典，发射UNKNOWN的概率不计入
+	 * @param model	HMM模型
+	 */
+	public TagDictionary(HMModel model) {
+		int N = model.statesCount();
+		int M = model.observationsCount();
+
+		allStates = new int[N];
+		for(int i = 0; i < N; i++)
+			allStates[i] = i;
+
+		allowed = new int[M][];
+		for(int t = 0; t < M; t++) {
+			int[] states = model.seenStates(t);
+			allowed[t] = states.length == 0 ? allStates : states;
+		}
+	}
+
+	/**
+	 * 返回观测允许的隐藏状态索引（升序），调用者不应修改返回的数组
+	 * @param observation	观测的索引，未登录观测为-1
+	 * @return				允许的隐藏状态索引，未登录观测或没有发射记录的观测返回全部隐藏状态
+	 */
+	public int[] getStates(int observation) {
+		if(observation < 0 || observation >= allowed.length)
+			return allStates;
+
+		return allowed[observation];
+	}
+
+	/**
+	 * 返回观测允许的隐藏状态数量
+	 * @param observation	观测的索引，未登录观测为-1
+	 * @return				允许的隐藏状态数量
+	 */
+	public int size(int observation) {
+		return getStates(observation).length;
+	}
+
+	/**
+	 * 返回给定状态是否允许发射给定观测
+	 * @param state			隐藏状态的索引
+	 * @param observation	观测的索引，未登录观测为-1
+	 * @return				true-允许/false-不允许
+	 */
+	public boolean isAllowed(int state, int observation) {
+		return Arrays.binarySearch(getStates(observation), state) >= 0;
+	}
+}
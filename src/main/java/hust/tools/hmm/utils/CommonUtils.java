@@ -1,10 +1,16 @@
 package hust.tools.hmm.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class CommonUtils {
 	
+	/**
+	 * 以10为底的对数转换为自然对数的系数，ln(x) = LN10 * log10(x)
+	 */
+	public static final double LN10 = Math.log(10);
+	
 	/**
 	   * <li>将给定的数组和n，生成所有可能的n元组
 	   * @param input 	待分割为N元组的序列
@@ -53,4 +59,49 @@ public class CommonUtils {
 		
 		return output;
 	}
+	
+	/**
+	 * 按键的升序同时对键数组和值数组排序
+	 * @param keys		键数组，元素应为非负整数
+	 * @param values	与键一一对应的值数组
+	 */
+	public static void sortByKey(int[] keys, double[] values) {
+		long[] packed = new long[keys.length];
+		for(int i = 0; i < keys.length; i++)
+			packed[i] = ((long) keys[i] << 32) | i;
+		
+		Arrays.sort(packed);
+		
+		double[] sortedValues = new double[values.length];
+		for(int i = 0; i < packed.length; i++) {
+			int index = (int) packed[i];
+			keys[i] = (int) (packed[i] >>> 32);
+			sortedValues[i] = values[index];
+		}
+		
+		System.arraycopy(sortedValues, 0, values, 0, values.length);
+	}
+	
+	/**
+	 * 计算log(exp(x[0]) + exp(x[1]) + ... + exp(x[length - 1]))，先减去最大值再求指数，避免下溢
+	 * @param x			自然对数值
+	 * @param length	参与计算的元素个数
+	 * @return			对数和，所有元素均为负无穷时返回负无穷
+	 */
+	public static double logSumExp(double[] x, int length) {
+		double max = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < length; i++) {
+			if(x[i] > max)
+				max = x[i];
+		}
+		
+		if(max == Double.NEGATIVE_INFINITY)
+			return max;
+		
+		double sum = 0.0;
+		for(int i = 0; i < length; i++)
+			sum += Math.exp(x[i] - max);
+		
+		return max + Math.log(sum);
+	}
 }
@@ -13,11 +13,11 @@ import java.util.Set;
  */
 public class Dictionary {
 	
-	private static int observation_index;						//动态递增，为观测状态赋索引值
+	private int observation_index;								//动态递增，为观测状态赋索引值
 	private HashMap<Observation, Integer> observationToIndex;	//观测状态及其索引的映射
 	private HashMap<Integer, Observation> indexToObservation;	//索引指向的观测状态
 	
-	private static int state_index;								//动态递增，为隐藏状态赋索引值
+	private int state_index;									//动态递增，为隐藏状态赋索引值
 	private HashMap<State, Integer> stateToIndex;				//隐藏状态及其索引的映射
 	private HashMap<Integer, State> indexToState;				//索引指向的隐藏状态
 	
@@ -52,6 +52,9 @@ public class Dictionary {
 	public void put(State state, int index) {
 		stateToIndex.put(state, index);
 		indexToState.put(index, state);
+		
+		if(index >= state_index)
+			state_index = index + 1;
 	}
 
 	/**
@@ -62,6 +65,9 @@ public class Dictionary {
 	public void put(Observation observation, int index) {
 		observationToIndex.put(observation, index);
 		indexToObservation.put(index, observation);
+		
+		if(index >= observation_index)
+			observation_index = index + 1;
 	}
 	
 	/**
@@ -0,0 +1,139 @@
+package hust.tools.hmm.demo.pos;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.TransitionAndEmissionCounter;
+import hust.tools.hmm.model.HMModel;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+
+/**
+ *<ul>
+ *<li>Description: 并行交叉验证单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class TrainAndEvaluateTest {
+
+	private static final int FOLDS = 4;
+
+	private List<SupervisedHMMSample> samples;
+	private TrainAndEvaluate trainer;
+
+	@Before
+	public void setUp() {
+		samples = SampleCorpus.zipfSamples(200, 8, 400, 5);
+		trainer = new TrainAndEvaluate(samples, 1, "WB");
+	}
+
+	/**
+	 * 返回除第fold折以外的样本，保持原来的顺序
+	 */
+	private List<SupervisedHMMSample> trainSamples(int fold) {
+		List<SupervisedHMMSample> trainSamples = new ArrayList<>();
+		for(int n = 0; n < samples.size(); n++) {
+			if(n % FOLDS != fold)
+				trainSamples.add(samples.get(n));
+		}
+
+		return trainSamples;
+	}
+
+	/**
+	 * 分别统计各折的计数，并按折的顺序合并到totalCounter中，与evaluateFolds的计数方式相同
+	 */
+	private List<TransitionAndEmissionCounter> countFolds(List<List<SupervisedHMMSample>> foldSamples, TransitionAndEmissionCounter totalCounter) {
+		List<TransitionAndEmissionCounter> foldCounters = new ArrayList<>();
+		for(List<SupervisedHMMSample> testSamples : foldSamples) {
+			TransitionAndEmissionCounter counter = new TransitionAndEmissionCounter(testSamples, 1);
+			foldCounters.add(counter);
+			totalCounter.merge(counter);
+		}
+
+		return foldCounters;
+	}
+
+	private static void assertMeasureEquals(EvaluateMeasure expected, EvaluateMeasure actual) {
+		assertEquals(expected.getPrecisionScore(), actual.getPrecisionScore(), 0);
+		assertEquals(expected.getPrecisionScoreIV(), actual.getPrecisionScoreIV(), 0);
+		assertEquals(expected.getPrecisionScoreOOV(), actual.getPrecisionScoreOOV(), 0);
+		assertEquals(expected.getSentenceAccuracy(), actual.getSentenceAccuracy(), 0);
+	}
+
+	//测试减去留出一折的计数得到的训练计数，与直接统计训练样本训练出相同的模型
+	@Test
+	public void testTrainCounter() throws Exception {
+		List<List<SupervisedHMMSample>> foldSamples = trainer.split(FOLDS);
+		TransitionAndEmissionCounter totalCounter = new TransitionAndEmissionCounter(1);
+		List<TransitionAndEmissionCounter> foldCounters = countFolds(foldSamples, totalCounter);
+
+		for(int i = 0; i < FOLDS; i++) {
+			HMModel expected = trainer.train(trainSamples(i));
+			HMModel actual = trainer.train(trainer.trainCounter(totalCounter, foldCounters.get(i)));
+
+			assertEquals(new HashSet<>(expected.getDict().getStates()), new HashSet<>(actual.getDict().getStates()));
+			assertEquals(new HashSet<>(expected.getDict().getObservations()), new HashSet<>(actual.getDict().getObservations()));
+			assertEquals(expected.getPi(), actual.getPi());
+			assertEquals(expected.getTransitionMatrix(), actual.getTransitionMatrix());
+			assertEquals(expected.getEmissionMatrix(), actual.getEmissionMatrix());
+		}
+	}
+
+	//测试并行评估的各折结果按折的顺序返回，与逐折串行训练和评估的结果相同
+	//直接统计训练样本得到的模型与减去计数得到的模型概率相同，但字典的索引顺序不同，概率相等的路径可能被选得不同，因此串行评估同样使用减去计数得到的模型
+	@Test
+	public void testFoldOrder() throws Exception {
+		List<List<SupervisedHMMSample>> foldSamples = trainer.split(FOLDS);
+		TransitionAndEmissionCounter totalCounter = new TransitionAndEmissionCounter(1);
+		List<TransitionAndEmissionCounter> foldCounters = countFolds(foldSamples, totalCounter);
+		List<EvaluateMeasure> measures = trainer.evaluateFolds(foldSamples, FOLDS);
+
+		assertEquals(FOLDS, measures.size());
+		HashSet<Double> precisions = new HashSet<>();
+		for(int i = 0; i < FOLDS; i++) {
+			HMModel model = trainer.train(trainer.trainCounter(totalCounter, foldCounters.get(i)));
+			EvaluateMeasure expected = trainer.evaluate(model, foldSamples.get(i));
+			assertMeasureEquals(expected, measures.get(i));
+			precisions.add(expected.getPrecisionScore());
+		}
+
+		//各折的结果互不相同，顺序错误时可被发现
+		assertEquals(FOLDS, precisions.size());
+	}
+
+	//测试合并后的评价结果为各折按词数和句数加权的结果，且与线程数无关
+	@Test
+	public void testCrossValidation() throws Exception {
+		List<List<SupervisedHMMSample>> foldSamples = trainer.split(FOLDS);
+		List<EvaluateMeasure> measures = trainer.evaluateFolds(foldSamples, 2);
+
+		double truePositive = 0;
+		double sentencesOK = 0;
+		int target = 0;
+		for(int i = 0; i < FOLDS; i++) {
+			int words = 0;
+			for(SupervisedHMMSample sample : foldSamples.get(i))
+				words += sample.getStateSequence().length();
+			truePositive += measures.get(i).getPrecisionScore() * words;
+			sentencesOK += measures.get(i).getSentenceAccuracy() * foldSamples.get(i).size();
+			target += words;
+		}
+
+		EvaluateMeasure total = trainer.crossValidation(1, FOLDS, 2);
+		assertEquals(truePositive / target, total.getPrecisionScore(), 1e-12);
+		assertEquals(sentencesOK / samples.size(), total.getSentenceAccuracy(), 1e-12);
+		assertTrue(total.getPrecisionScore() > 0.5);
+
+		assertMeasureEquals(total, trainer.crossValidation(1, FOLDS, 1));
+		assertMeasureEquals(total, trainer.crossValidation(1, FOLDS, FOLDS));
+	}
+}
@@ -0,0 +1,57 @@
+package hust.tools.hmm.demo.pos;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+import opennlp.tools.util.ObjectStreamUtils;
+
+/**
+ *<ul>
+ *<li>Description: 词性标注语料样本流单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class WordTagSampleStreamTest {
+
+	//测试以最后一个"/"分隔词与词性，并跳过空行
+	@Test
+	public void testRead() throws IOException {
+		WordTagSampleStream stream = new WordTagSampleStream(ObjectStreamUtils.createObjectStream(
+				"a/b/NN //PU", "   ", "", "word/VV"));
+
+		SupervisedHMMSample sample = (SupervisedHMMSample) stream.read();
+		assertEquals(2, sample.getObservationSequence().length());
+		assertEquals(new StringObservation("a/b"), sample.getObservationSequence().get(0));
+		assertEquals(new StringState("NN"), sample.getStateSequence().get(0));
+		assertEquals(new StringObservation("/"), sample.getObservationSequence().get(1));
+		assertEquals(new StringState("PU"), sample.getStateSequence().get(1));
+
+		sample = (SupervisedHMMSample) stream.read();
+		assertEquals(1, sample.getObservationSequence().length());
+		assertEquals(new StringObservation("word"), sample.getObservationSequence().get(0));
+		assertEquals(new StringState("VV"), sample.getStateSequence().get(0));
+
+		assertNull(stream.read());
+		stream.close();
+	}
+
+	//测试词为空的词与词性
+	@Test(expected = IOException.class)
+	public void testEmptyWord() throws IOException {
+		WordTagSampleStream.parse("a/NN /w");
+	}
+
+	//测试词性为空的词与词性
+	@Test(expected = IOException.class)
+	public void testEmptyTag() throws IOException {
+		WordTagSampleStream.parse("word/ b/NN");
+	}
+}
@@ -0,0 +1,74 @@
+package hust.tools.hmm.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.learn.SupervisedWittenBellHMMTrainer;
+import hust.tools.hmm.model.HMModel;
+import hust.tools.hmm.model.HMModelBasedBO;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+
+/**
+ *<ul>
+ *<li>Description: 紧凑二进制模型文件读写单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class CompactBinaryFileHMMTest {
+
+	private List<SupervisedHMMSample> samples;
+
+	@Before
+	public void setUp() {
+		samples = SampleCorpus.samples();
+	}
+
+	private HMModel writeAndRead(HMModelBasedBO model) throws IOException, ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new CompactBinaryFileHMMWriter(model, new DataOutputStream(bytes)).persist();
+
+		return new CompactBinaryFileHMMReader(new ByteArrayInputStream(bytes.toByteArray())).readModel();
+	}
+
+	//测试写出的模型读回后与原模型相同
+	@Test
+	public void testRoundTrip() throws Exception {
+		HMModelBasedBO model = (HMModelBasedBO) new SupervisedAdditionHMMTrainer(samples, 1, 0.01).train();
+		assertEquals(model, writeAndRead(model));
+
+		model = (HMModelBasedBO) new SupervisedWittenBellHMMTrainer(samples, 2).train();
+		assertEquals(model, writeAndRead(model));
+	}
+
+	//测试原有二进制格式的数量按int写出后可正确读回
+	@Test
+	public void testBinaryFileRoundTrip() throws Exception {
+		HMModelBasedBO model = (HMModelBasedBO) new SupervisedAdditionHMMTrainer(samples, 1, 0.01).train();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new BinaryFileHMMWriter(model, new DataOutputStream(bytes)).persist();
+
+		assertEquals(model, new BinaryFileHMMReader(new ByteArrayInputStream(bytes.toByteArray())).readModel());
+	}
+
+	//测试拒绝读取非紧凑二进制格式的文件
+	@Test(expected = IOException.class)
+	public void testWrongMagic() throws Exception {
+		HMModelBasedBO model = (HMModelBasedBO) new SupervisedAdditionHMMTrainer(samples, 1, 0.01).train();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new BinaryFileHMMWriter(model, new DataOutputStream(bytes)).persist();
+
+		new CompactBinaryFileHMMReader(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+}
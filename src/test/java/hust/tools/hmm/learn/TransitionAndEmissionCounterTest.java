@@ -2,20 +2,28 @@ package hust.tools.hmm.learn;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import hust.tools.hmm.io.BinaryFileCounterReader;
+import hust.tools.hmm.io.BinaryFileCounterWriter;
 import hust.tools.hmm.learn.TransitionAndEmissionCounter;
 import hust.tools.hmm.utils.StringObservation;
 import hust.tools.hmm.utils.StringState;
+import hust.tools.hmm.stream.AbstractHMMSample;
 import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.stream.SupervisedHMMSampleStream;
 import hust.tools.hmm.utils.Observation;
 import hust.tools.hmm.utils.ObservationSequence;
 import hust.tools.hmm.utils.State;
 import hust.tools.hmm.utils.StateSequence;
+import opennlp.tools.util.ObjectStreamUtils;
 
 /**
  *<ul>
@@ -190,4 +198,94 @@ public class TransitionAndEmissionCounterTest {
 		assertTrue(1 == counter.getStartStateCount(new StringState("0")));
 		assertTrue(3 == counter.getTotalStartStatesCount());
 	}
+
+	//测试并行计数的结果与串行计数相同
+	@Test
+	public void testParallelCount() throws Exception {
+		List<SupervisedHMMSample> corpus = new ArrayList<>();
+		for(int n = 0; n < 50; n++) {
+			corpus.addAll(samples);
+			corpus.add(sample);
+		}
+		
+		TransitionAndEmissionCounter serial = new TransitionAndEmissionCounter(corpus, order);
+		assertCountEquals(serial, new TransitionAndEmissionCounter(corpus, order, 3));
+		
+		SupervisedHMMSampleStream<AbstractHMMSample> stream = new SupervisedHMMSampleStream<AbstractHMMSample>(ObjectStreamUtils.createObjectStream(new ArrayList<AbstractHMMSample>(corpus))) {
+			@Override
+			public AbstractHMMSample read() throws IOException {
+				return samples.read();
+			}
+		};
+		assertCountEquals(serial, new TransitionAndEmissionCounter(stream, order, 3));
+	}
+	
+	//测试分片计数写出快照后再读取合并，结果与串行计数相同
+	@Test
+	public void testSnapshot() throws Exception {
+		List<SupervisedHMMSample> corpus = new ArrayList<>(samples);
+		corpus.add(sample);
+		TransitionAndEmissionCounter serial = new TransitionAndEmissionCounter(corpus, order);
+		
+		File first = File.createTempFile("counter", ".bin");
+		File second = File.createTempFile("counter", ".bin");
+		first.deleteOnExit();
+		second.deleteOnExit();
+		new BinaryFileCounterWriter(new TransitionAndEmissionCounter(corpus.subList(0, 2), order), first).persist();
+		new BinaryFileCounterWriter(new TransitionAndEmissionCounter(corpus.subList(2, corpus.size()), order), second).persist();
+		
+		TransitionAndEmissionCounter merged = new BinaryFileCounterReader(first).readCounter();
+		merged.merge(new BinaryFileCounterReader(second).readCounter());
+		assertCountEquals(serial, merged);
+	}
+	
+	//测试全部计数减去留出部分的计数，结果与直接统计其余样本相同
+	@Test
+	public void testSubtract() {
+		List<SupervisedHMMSample> corpus = new ArrayList<>(samples);
+		corpus.add(sample);
+		
+		TransitionAndEmissionCounter total = new TransitionAndEmissionCounter(corpus, order);
+		total.subtract(new TransitionAndEmissionCounter(corpus.subList(2, corpus.size()), order));
+		assertCountEquals(new TransitionAndEmissionCounter(corpus.subList(0, 2), order), total);
+		
+		//计数不足时抛出异常且不修改计数器
+		TransitionAndEmissionCounter part = new TransitionAndEmissionCounter(corpus.subList(0, 1), order);
+		try {
+			part.subtract(new TransitionAndEmissionCounter(corpus.subList(1, 2), order));
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertCountEquals(new TransitionAndEmissionCounter(corpus.subList(0, 1), order), part);
+		}
+		
+		total.subtract(new TransitionAndEmissionCounter(corpus.subList(0, 2), order));
+		assertEquals(0, total.getTotalStatesCount());
+		assertEquals(0, total.getDictionary().stateCount());
+		assertFalse(total.transitionIterator().hasNext());
+	}
+	
+	private void assertCountEquals(TransitionAndEmissionCounter expected, TransitionAndEmissionCounter actual) {
+		assertEquals(expected.getDictionary(), actual.getDictionary());
+		assertEquals(expected.getTransitionCount(), actual.getTransitionCount());
+		assertEquals(expected.getTotalStatesCount(), actual.getTotalStatesCount());
+		assertEquals(expected.getTotalStartStatesCount(), actual.getTotalStartStatesCount());
+		
+		Iterator<StateSequence> sequences = expected.transitionIterator();
+		while(sequences.hasNext()) {
+			StateSequence sequence = sequences.next().remove(0);
+			assertEquals(expected.getSuffixs(sequence), actual.getSuffixs(sequence));
+		}
+		
+		for(State state : expected.getDictionary().getStates()) {
+			assertEquals(expected.getStartStateCount(state), actual.getStartStateCount(state));
+			assertEquals(expected.getStateCount(state), actual.getStateCount(state));
+			for(Observation observation : expected.getDictionary().getObservations()) {
+				assertEquals(expected.getEmissionCount(state, observation), actual.getEmissionCount(state, observation));
+				assertEquals(expected.getRevEmissionCount(observation, state), actual.getRevEmissionCount(observation, state));
+			}
+		}
+		
+		for(Observation observation : expected.getDictionary().getObservations())
+			assertEquals(expected.getObservationCount(observation), actual.getObservationCount(observation));
+	}
 }
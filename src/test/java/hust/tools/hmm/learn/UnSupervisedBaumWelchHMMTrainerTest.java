@@ -0,0 +1,150 @@
+package hust.tools.hmm.learn;
+
+import static hust.tools.hmm.testutil.SampleCorpus.sample;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.model.ForwardAlgorithm;
+import hust.tools.hmm.model.HMModel;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.utils.ObservationSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于Baum-Welch的非监督HMM训练器单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class UnSupervisedBaumWelchHMMTrainerTest {
+
+	private HMModel initModel;
+	private List<SupervisedHMMSample> samples;
+	private List<ObservationSequence> sequences;
+
+	@Before
+	public void setUp() throws Exception {
+		samples = new ArrayList<>();
+		samples.add(sample(new String[]{"1", "2", "3", "2", "3", "2", "1", "3"}, new String[]{"a", "b", "c", "d", "d", "c", "b", "b"}));
+		samples.add(sample(new String[]{"3", "3", "1", "2", "2", "2", "1", "3", "2"}, new String[]{"c", "a", "b", "c", "c", "a", "d", "a", "a"}));
+		samples.add(sample(new String[]{"2", "2", "1", "1", "3", "1", "1"}, new String[]{"a", "b", "a", "c", "b", "a", "d"}));
+		initModel = new SupervisedAdditionHMMTrainer(samples, 1, 1.0).train();
+
+		sequences = new ArrayList<>();
+		for(int n = 0; n < 10; n++) {
+			for(SupervisedHMMSample sample : samples)
+				sequences.add(sample.getObservationSequence());
+		}
+	}
+
+	private double logProb(HMModel model) {
+		double logProb = 0;
+		for(ObservationSequence sequence : sequences)
+			logProb += new ForwardAlgorithm(model, sequence).getLogProb();
+
+		return logProb;
+	}
+
+	//测试训练后观测序列的概率不低于初始模型
+	@Test
+	public void testTrain() {
+		HMModel model = new UnSupervisedBaumWelchHMMTrainer(initModel, 1, sequences, 1).train();
+
+		assertTrue(logProb(model) > logProb(initModel));
+	}
+
+	//测试并行E步的训练结果与单线程相同
+	@Test
+	public void testParallelExpectation() {
+		HMModel serial = new UnSupervisedBaumWelchHMMTrainer(initModel, 1, sequences, 1).train();
+		HMModel parallel = new UnSupervisedBaumWelchHMMTrainer(initModel, 1, sequences, 3).train();
+
+		for(int i = 0; i < serial.statesCount(); i++) {
+			assertEquals(serial.getLogPi(i), parallel.getLogPi(i), 1e-9);
+			for(int j = 0; j < serial.statesCount(); j++)
+				assertEquals(serial.transitionLogProb(i, j), parallel.transitionLogProb(i, j), 1e-9);
+			for(int k = 0; k < serial.observationsCount(); k++)
+				assertEquals(serial.emissionLogProb(i, k), parallel.emissionLogProb(i, k), 1e-9);
+		}
+	}
+
+	//测试一次迭代重新估计的参数与穷举全部隐藏序列计算gamma和xi得到的参数一致
+	@Test
+	public void testOneIteration() {
+		List<ObservationSequence> tiny = new ArrayList<>();
+		for(SupervisedHMMSample sample : samples)
+			tiny.add(sample.getObservationSequence());
+		UnSupervisedBaumWelchHMMTrainer trainer = new UnSupervisedBaumWelchHMMTrainer(initModel, 1, tiny, 2);
+		trainer.setIteration(1);
+		HMModel model = trainer.train();
+
+		int N = initModel.statesCount();
+		int M = initModel.observationsCount();
+		double[] pi = new double[N];
+		double[][] xi = new double[N][N];
+		double[] xiSum = new double[N];
+		double[][] gammaObservation = new double[M][N];
+		double[] gammaSum = new double[N];
+		for(ObservationSequence sequence : tiny) {
+			int T = sequence.length();
+			int[] o = new int[T];
+			for(int t = 0; t < T; t++)
+				o[t] = initModel.getObservationIndex(sequence.get(t));
+
+			//穷举N^T条隐藏序列的联合概率P(S, O)
+			int paths = (int) Math.pow(N, T);
+			double[] joint = new double[paths];
+			double total = 0;
+			for(int p = 0; p < paths; p++) {
+				int[] s = path(p, N, T);
+				double logProb = initModel.getLogPi(s[0]) + initModel.emissionLogProb(s[0], o[0]);
+				for(int t = 1; t < T; t++)
+					logProb += initModel.transitionLogProb(s[t - 1], s[t]) + initModel.emissionLogProb(s[t], o[t]);
+				joint[p] = Math.pow(10, logProb);
+				total += joint[p];
+			}
+
+			//gamma[t][i]与xi[t][i][j]为经过相应状态的路径的后验概率之和
+			for(int p = 0; p < paths; p++) {
+				int[] s = path(p, N, T);
+				double posterior = joint[p] / total;
+				pi[s[0]] += posterior;
+				for(int t = 0; t < T; t++) {
+					gammaObservation[o[t]][s[t]] += posterior;
+					gammaSum[s[t]] += posterior;
+					if(t < T - 1) {
+						xi[s[t]][s[t + 1]] += posterior;
+						xiSum[s[t]] += posterior;
+					}
+				}
+			}
+		}
+
+		for(int i = 0; i < N; i++) {
+			assertEquals(Math.log10(0.001 + 0.999 * pi[i] / tiny.size()), model.getLogPi(i), 1e-9);
+			for(int j = 0; j < N; j++)
+				assertEquals(Math.log10(0.001 + 0.999 * xi[i][j] / xiSum[i]), model.transitionLogProb(i, j), 1e-9);
+			for(int k = 0; k < M; k++)
+				assertEquals(Math.log10(0.001 + 0.999 * gammaObservation[k][i] / gammaSum[i]), model.emissionLogProb(i, k), 1e-9);
+		}
+	}
+
+	/**
+	 * 将编号p按N进制展开为长度为T的隐藏状态索引序列
+	 */
+	private static int[] path(int p, int N, int T) {
+		int[] s = new int[T];
+		for(int t = T - 1; t >= 0; t--) {
+			s[t] = p % N;
+			p /= N;
+		}
+
+		return s;
+	}
+}
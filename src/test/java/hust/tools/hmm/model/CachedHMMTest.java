@@ -0,0 +1,134 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 带解码结果缓存的HMM单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class CachedHMMTest {
+
+	/**
+	 * 记录解码次数的HMM，每个观测解码为以tag为名的隐藏状态
+	 */
+	private static class CountingHMM implements HMM {
+
+		private String tag;
+
+		private int decodes;
+
+		private CountingHMM(String tag) {
+			this.tag = tag;
+		}
+
+		@Override
+		public StateSequence bestStateSeqence(ObservationSequence observations, int order) {
+			decodes++;
+			State[] states = new State[observations.length()];
+			for(int i = 0; i < states.length; i++)
+				states[i] = new StringState(tag);
+
+			return new StateSequence(states);
+		}
+
+		@Override
+		public double getProb(ObservationSequence observations, int order) {
+			return 0;
+		}
+
+		@Override
+		public double getProb(ObservationSequence observations, StateSequence states, int order) {
+			return 0;
+		}
+	}
+
+	private CountingHMM hmm;
+
+	@Before
+	public void setUp() {
+		hmm = new CountingHMM("n");
+	}
+
+	private ObservationSequence observations(String... o) {
+		Observation[] observations = new StringObservation[o.length];
+		for(int i = 0; i < o.length; i++)
+			observations[i] = new StringObservation(o[i]);
+
+		return new ObservationSequence(observations);
+	}
+
+	//测试重复的观测序列命中缓存，不同阶数分别缓存
+	@Test
+	public void testHit() {
+		CachedHMM cached = new CachedHMM(hmm, 10);
+		StateSequence first = cached.bestStateSeqence(observations("a", "b"), 1);
+		assertSame(first, cached.bestStateSeqence(observations("a", "b"), 1));
+		cached.bestStateSeqence(observations("a", "b"), 2);
+
+		assertEquals(2, hmm.decodes);
+		assertEquals(1, cached.getHitCount());
+		assertEquals(2, cached.getMissCount());
+		assertEquals(1.0 / 3, cached.getHitRate(), 1e-12);
+
+		//修改调用者的观测数组不影响缓存的键
+		Observation[] array = new Observation[]{new StringObservation("c")};
+		cached.bestStateSeqence(new ObservationSequence(array), 1);
+		array[0] = new StringObservation("d");
+		cached.bestStateSeqence(observations("c"), 1);
+		assertEquals(3, hmm.decodes);
+	}
+
+	//测试按条目数量和权重淘汰最久未被访问的条目
+	@Test
+	public void testEviction() {
+		CachedHMM cached = new CachedHMM(hmm, 2);
+		cached.bestStateSeqence(observations("a"), 1);
+		cached.bestStateSeqence(observations("b"), 1);
+		cached.bestStateSeqence(observations("a"), 1);
+		cached.bestStateSeqence(observations("c"), 1);
+		assertEquals(2, cached.size());
+		assertEquals(1, cached.getEvictionCount());
+
+		cached.bestStateSeqence(observations("a"), 1);
+		assertEquals(3, hmm.decodes);
+		cached.bestStateSeqence(observations("b"), 1);
+		assertEquals(4, hmm.decodes);
+
+		cached = new CachedHMM(hmm, 100, 5);
+		cached.bestStateSeqence(observations("a", "b", "c"), 1);
+		cached.bestStateSeqence(observations("d", "e"), 1);
+		assertEquals(5, cached.getWeight());
+		cached.bestStateSeqence(observations("f"), 1);
+		assertEquals(2, cached.size());
+		assertEquals(3, cached.getWeight());
+
+		//权重超过上限的观测序列不缓存
+		cached.bestStateSeqence(observations("a", "b", "c", "d", "e", "f"), 1);
+		assertEquals(2, cached.size());
+	}
+
+	//测试更换HMM后清空缓存
+	@Test
+	public void testSetHMM() {
+		CachedHMM cached = new CachedHMM(hmm, 10);
+		cached.bestStateSeqence(observations("a", "b"), 1);
+		cached.setHMM(new CountingHMM("v"));
+
+		assertEquals(0, cached.size());
+		assertEquals(new StringState("v"), cached.bestStateSeqence(observations("a", "b"), 1).get(0));
+	}
+}
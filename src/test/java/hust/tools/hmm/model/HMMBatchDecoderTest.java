@@ -0,0 +1,207 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.StateSequence;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.ObjectStreamUtils;
+
+/**
+ *<ul>
+ *<li>Description: 批量解码器单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMMBatchDecoderTest {
+
+	private int order;
+	private HMModel hmModel;
+	private HMM model;
+	private List<ObservationSequence> sequences;
+	private List<StateSequence> expected;
+
+	@Before
+	public void setUp() throws Exception {
+		order = 1;
+		hmModel = new SupervisedAdditionHMMTrainer(SampleCorpus.samples(), order, 1.0).train();
+		model = new HMMWithViterbi(hmModel);
+
+		//观测e未登录
+		String letters = "abcde";
+		sequences = new ArrayList<>();
+		expected = new ArrayList<>();
+		for(int n = 1; n <= 200; n++) {
+			String[] o = new String[n % 17 + 1];
+			for(int i = 0; i < o.length; i++)
+				o[i] = Character.toString(letters.charAt((n + i) % letters.length()));
+			ObservationSequence observationSequence = SampleCorpus.observations(o);
+			sequences.add(observationSequence);
+			expected.add(model.bestStateSeqence(observationSequence, order));
+		}
+	}
+
+	/**
+	 * 读完流中的全部结果
+	 */
+	private static List<StateSequence> readAll(ObjectStream<StateSequence> stream) throws IOException {
+		List<StateSequence> actual = new ArrayList<>();
+		StateSequence stateSequence = null;
+		while((stateSequence = stream.read()) != null)
+			actual.add(stateSequence);
+		stream.close();
+
+		return actual;
+	}
+
+	//测试批量解码的结果与逐个解码一致且保持输入顺序
+	@Test
+	public void testBatchDecode() throws Exception {
+		HMMBatchDecoder decoder = new HMMBatchDecoder(model, 4);
+		assertEquals(expected, decoder.bestStateSeqences(sequences, order));
+		assertEquals(expected, readAll(decoder.bestStateSeqences(ObjectStreamUtils.createObjectStream(sequences), order)));
+		decoder.close();
+	}
+
+	//测试各任务完成的先后与输入顺序不同时，流式解码仍按输入顺序返回结果
+	@Test
+	public void testStreamOrder() throws Exception {
+		HMM slow = new HMMWithViterbi(hmModel) {
+			@Override
+			public StateSequence bestStateSeqence(ObservationSequence observationSequence, int order) {
+				//较短的序列解码较慢，后提交的任务可能先完成
+				try {
+					Thread.sleep(18 - observationSequence.length());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				return super.bestStateSeqence(observationSequence, order);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		HMMBatchDecoder decoder = new HMMBatchDecoder(slow, executor, 1);
+		assertEquals(expected, readAll(decoder.bestStateSeqences(ObjectStreamUtils.createObjectStream(sequences), order)));
+		executor.shutdown();
+	}
+
+	//测试流式批量解码出错时抛出IOException，并取消其余的任务
+	@Test
+	public void testBatchDecodeFailure() throws Exception {
+		ObservationSequence sequence = SampleCorpus.observations("b", "a", "d");
+		List<ObservationSequence> sequences = new ArrayList<>();
+		for(int n = 0; n < 2000; n++)
+			sequences.add(n == 70 ? new ObservationSequence() : sequence);
+
+		final AtomicInteger decoded = new AtomicInteger();
+		HMM failing = new HMMWithViterbi(hmModel) {
+			@Override
+			public StateSequence bestStateSeqence(ObservationSequence observationSequence, int order) {
+				if(observationSequence.length() == 0)
+					throw new IllegalArgumentException("空的观测序列");
+
+				decoded.incrementAndGet();
+				return super.bestStateSeqence(observationSequence, order);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		HMMBatchDecoder decoder = new HMMBatchDecoder(failing, executor, 10);
+		ObjectStream<StateSequence> stream = decoder.bestStateSeqences(ObjectStreamUtils.createObjectStream(sequences), order);
+		int read = 0;
+		try {
+			while(stream.read() != null)
+				read++;
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		assertEquals(70, read);
+		assertNull(stream.read());
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(decoded.get() < sequences.size() - 1);
+	}
+
+	//测试关闭结果流时取消未完成的任务并关闭输入流
+	@Test
+	public void testClose() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		HMM blocking = new HMMWithViterbi(hmModel) {
+			@Override
+			public StateSequence bestStateSeqence(ObservationSequence observationSequence, int order) {
+				//除第一个序列外，解码一直阻塞到任务被取消
+				if(observationSequence.length() > 1) {
+					try {
+						latch.await();
+					} catch (InterruptedException e) {
+						return null;
+					}
+				}
+
+				return super.bestStateSeqence(observationSequence, order);
+			}
+		};
+
+		List<ObservationSequence> input = new ArrayList<>();
+		input.add(SampleCorpus.observations("a"));
+		input.addAll(sequences);
+		final AtomicInteger read = new AtomicInteger();
+		final AtomicBoolean closed = new AtomicBoolean();
+		final ObjectStream<ObservationSequence> source = ObjectStreamUtils.createObjectStream(input);
+		ObjectStream<ObservationSequence> stream = new ObjectStream<ObservationSequence>() {
+			@Override
+			public ObservationSequence read() throws IOException {
+				ObservationSequence observationSequence = source.read();
+				if(observationSequence != null)
+					read.incrementAndGet();
+
+				return observationSequence;
+			}
+
+			@Override
+			public void reset() throws IOException {
+				source.reset();
+			}
+
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				source.close();
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		HMMBatchDecoder decoder = new HMMBatchDecoder(blocking, executor, 1);
+		ObjectStream<StateSequence> result = decoder.bestStateSeqences(stream, order);
+		assertEquals(model.bestStateSeqence(input.get(0), order), result.read());
+		result.close();
+
+		assertTrue(closed.get());
+		assertTrue(read.get() < input.size());
+
+		//正在执行的任务被中断，未开始的任务不再执行，因此不释放latch线程池也能结束
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(1, latch.getCount());
+	}
+}
@@ -0,0 +1,101 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+
+/**
+ *<ul>
+ *<li>Description: 基于beamSearch的HMM单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMMWithBeamSearchTest {
+
+	private HMModel model;
+	private ObservationSequence sequence;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.samples();
+
+		model = new SupervisedAdditionHMMTrainer(samples, 2, 1.0).train();
+
+		Observation[] observations = new StringObservation[]{
+				new StringObservation("b"),
+				new StringObservation("c"),
+				new StringObservation("z"),
+				new StringObservation("a"),
+				new StringObservation("d")};
+		sequence = new ObservationSequence(observations);
+	}
+
+	/**
+	 * 逐个时刻用getProb重新计算整个前缀得分的beamSearch，作为增量计算的参照
+	 */
+	private StateSequence rescoringBeamSearch(HMMWithBeamSearch hmm, int beamSize, int order) {
+		List<StateSequenceWithScore> prev = new ArrayList<>();
+		prev.add(new StateSequenceWithScore(new StateSequence(), 1));
+		for(int t = 0; t < sequence.length(); t++) {
+			Observation[] prefix = new Observation[t + 1];
+			for(int i = 0; i <= t; i++)
+				prefix[i] = sequence.get(i);
+			ObservationSequence observations = new ObservationSequence(prefix);
+
+			List<StateSequenceWithScore> next = new ArrayList<>();
+			for(StateSequenceWithScore top : prev) {
+				for(int j = 0; j < model.statesCount(); j++) {
+					StateSequence states = top.getStateSequence().add(model.getState(j));
+					next.add(new StateSequenceWithScore(states, hmm.getProb(observations, states, order)));
+				}
+			}
+
+			Collections.sort(next);
+			prev = next.subList(0, Math.min(beamSize, next.size()));
+		}
+
+		return prev.get(0).getStateSequence();
+	}
+
+	//测试增量计分的结果与逐前缀重新计分的beamSearch一致
+	@Test
+	public void testBestStateSeqence() {
+		for(int order = 1; order <= 3; order++) {
+			for(int beamSize = 1; beamSize <= 4; beamSize++) {
+				HMMWithBeamSearch hmm = new HMMWithBeamSearch(model, beamSize);
+				StateSequence expected = rescoringBeamSearch(hmm, beamSize, order);
+				StateSequence actual = hmm.bestStateSeqence(sequence, order);
+
+				assertEquals(sequence.length(), actual.length());
+				double expectedProb = hmm.getProb(sequence, expected, order);
+				assertEquals(expectedProb, hmm.getProb(sequence, actual, order), expectedProb * 1e-9);
+			}
+		}
+	}
+
+	//测试beam足够大时，2元转移的beamSearch与Viterbi解码得到的最优路径概率相同
+	@Test
+	public void testFullBeam() {
+		HMMWithBeamSearch hmm = new HMMWithBeamSearch(model, 10000);
+		StateSequence beam = hmm.bestStateSeqence(sequence, 2);
+		StateSequence viterbi = new HMMWithViterbi(model).bestStateSeqence(sequence, 1);
+
+		double expectedProb = hmm.getProb(sequence, viterbi, 2);
+		assertEquals(expectedProb, hmm.getProb(sequence, beam, 2), expectedProb * 1e-9);
+	}
+}
@@ -0,0 +1,132 @@
+package hust.tools.hmm.model;
+
+import static hust.tools.hmm.testutil.SampleCorpus.sample;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+
+/**
+ *<ul>
+ *<li>Description: 基于前向-后向算法的后验解码HMM单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMMWithPosteriorTest {
+
+	private HMModel model;
+	private ObservationSequence sequence;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = new ArrayList<>();
+		samples.add(sample(new String[]{"1", "2", "3", "4", "3", "2", "4", "5"}, new String[]{"a", "b", "c", "d", "d", "c", "b", "b"}));
+		samples.add(sample(new String[]{"3", "3", "4", "5", "2", "2", "1", "3", "5"}, new String[]{"c", "e", "b", "c", "c", "e", "d", "e", "e"}));
+		samples.add(sample(new String[]{"5", "2", "1", "4", "3", "1", "1"}, new String[]{"a", "b", "a", "c", "b", "a", "d"}));
+
+		model = new SupervisedAdditionHMMTrainer(samples, 1, 1.0).train();
+
+		Observation[] observations = new StringObservation[]{
+				new StringObservation("b"),
+				new StringObservation("e"),
+				new StringObservation("z"),
+				new StringObservation("a")};
+		sequence = new ObservationSequence(observations);
+	}
+
+	/**
+	 * 穷举所有隐藏序列，累加每个时刻各状态的路径概率之和，返回全部路径的概率之和
+	 */
+	private double enumerate(HMM hmm, TagDictionary dictionary, int[] path, int t, double[][] marginals) {
+		if(t == path.length) {
+			State[] states = new State[path.length];
+			for(int i = 0; i < path.length; i++)
+				states[i] = model.getState(path[i]);
+
+			double prob = hmm.getProb(sequence, new StateSequence(states), 1);
+			for(int i = 0; i < path.length; i++)
+				marginals[i][path[i]] += prob;
+
+			return prob;
+		}
+
+		double sum = 0;
+		int observation = model.getObservationIndex(sequence.get(t));
+		for(int i = 0; i < model.statesCount(); i++) {
+			if(dictionary != null && !dictionary.isAllowed(i, observation))
+				continue;
+
+			path[t] = i;
+			sum += enumerate(hmm, dictionary, path, t + 1, marginals);
+		}
+
+		return sum;
+	}
+
+	private void assertPosterior(TagDictionary dictionary) {
+		HMMWithPosterior hmm = new HMMWithPosterior(model, dictionary);
+		double[][] marginals = new double[sequence.length()][model.statesCount()];
+		double total = enumerate(hmm, dictionary, new int[sequence.length()], 0, marginals);
+
+		StateSequenceWithPosterior result = hmm.decode(sequence);
+		assertEquals(Math.log(total), result.getLogProb(), 1e-9);
+		assertEquals(total, hmm.getProb(sequence, 1), total * 1e-9);
+
+		for(int t = 0; t < sequence.length(); t++) {
+			double sum = 0;
+			int best = 0;
+			for(int i = 0; i < model.statesCount(); i++) {
+				assertEquals(marginals[t][i] / total, result.getPosterior(t, i), 1e-9);
+				sum += result.getPosterior(t, i);
+				if(marginals[t][i] > marginals[t][best])
+					best = i;
+			}
+
+			assertEquals(1.0, sum, 1e-9);
+			assertEquals(model.getState(best), result.getStateSequence().get(t));
+			assertEquals(marginals[t][best] / total, result.getConfidence(t), 1e-9);
+		}
+	}
+
+	//测试后验概率、最大后验隐藏序列和观测序列概率与穷举结果一致
+	@Test
+	public void testDecode() {
+		assertPosterior(null);
+		assertEquals(new ForwardAlgorithm(model, sequence).getLogProb(), new HMMWithPosterior(model).decode(sequence).getLogProb(), 1e-9);
+	}
+
+	//测试给定标注词典时只在允许的路径上计算后验概率
+	@Test
+	public void testDecodeWithTagDictionary() {
+		assertPosterior(new TagDictionary(model));
+	}
+
+	//测试重复解码时复用的工作空间不影响结果
+	@Test
+	public void testReuseWorkspace() {
+		HMMWithPosterior hmm = new HMMWithPosterior(model);
+		ObservationSequence shorter = new ObservationSequence(new Observation[]{new StringObservation("c"), new StringObservation("a")});
+
+		StateSequenceWithPosterior expected = hmm.decode(shorter);
+		hmm.decode(sequence);
+		StateSequenceWithPosterior actual = hmm.decode(shorter);
+
+		assertEquals(expected.getStateSequence(), actual.getStateSequence());
+		assertEquals(expected.getLogProb(), actual.getLogProb(), 0);
+		for(int t = 0; t < shorter.length(); t++)
+			assertArrayEquals(expected.getPosteriors(t), actual.getPosteriors(t), 0);
+	}
+}
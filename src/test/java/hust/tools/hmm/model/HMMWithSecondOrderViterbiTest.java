@@ -0,0 +1,124 @@
+package hust.tools.hmm.model;
+
+import static hust.tools.hmm.testutil.SampleCorpus.observations;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于2阶维特比解码的HMM单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMMWithSecondOrderViterbiTest {
+
+	private HMModelBasedBO model;
+	private HMMWithSecondOrderViterbi hmm;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.samples();
+
+		SupervisedAdditionHMMTrainer learner = new SupervisedAdditionHMMTrainer(samples, 2, 1.0);
+		model = (HMModelBasedBO) learner.train();
+		hmm = new HMMWithSecondOrderViterbi(model);
+	}
+
+	/**
+	 * 穷举所有隐藏序列，返回2阶模型下的最大概率
+	 */
+	private double bruteForce(ObservationSequence observations, State[] path, int t) {
+		return enumerate(observations, path, t, null)[0];
+	}
+
+	/**
+	 * 穷举标注词典允许的所有隐藏序列，返回2阶模型下的{最大路径概率, 路径概率之和}
+	 */
+	private double[] enumerate(ObservationSequence observations, State[] path, int t, TagDictionary tagDictionary) {
+		if(t == path.length) {
+			double prob = hmm.getProb(observations, new StateSequence(path.clone()), 2);
+			return new double[]{prob, prob};
+		}
+
+		double[] result = new double[2];
+		for(int i = 0; i < model.statesCount(); i++) {
+			if(tagDictionary != null && !tagDictionary.isAllowed(i, model.getObservationIndex(observations.get(t))))
+				continue;
+
+			path[t] = model.getState(i);
+			double[] sub = enumerate(observations, path, t + 1, tagDictionary);
+			result[0] = Math.max(result[0], sub[0]);
+			result[1] += sub[1];
+		}
+
+		return result;
+	}
+
+	//测试解码结果与穷举得到的最优隐藏序列的概率一致
+	@Test
+	public void testBestStateSeqence() {
+		String[][] cases = new String[][]{{"a"}, {"a", "c"}, {"b", "c", "a", "d"}, {"a", "z", "c", "b", "b"}};
+		for(String[] o : cases) {
+			ObservationSequence sequence = observations(o);
+			StateSequence best = hmm.bestStateSeqence(sequence, 2);
+
+			assertEquals(sequence.length(), best.length());
+			double expected = bruteForce(sequence, new State[sequence.length()], 0);
+			assertEquals(expected, hmm.getProb(sequence, best, 2), expected * 1e-9);
+		}
+	}
+
+	//测试重复解码时复用的工作空间不影响结果
+	@Test
+	public void testReuseWorkspace() {
+		ObservationSequence longer = observations("b", "c", "a", "d", "a", "c");
+		ObservationSequence shorter = observations("c", "a", "b");
+
+		StateSequence expected = hmm.bestStateSeqence(shorter, 2);
+		hmm.bestStateSeqence(longer, 2);
+		assertEquals(expected, hmm.bestStateSeqence(shorter, 2));
+	}
+
+	//测试观测序列的概率等于2阶模型下所有隐藏序列的概率之和
+	@Test
+	public void testGetProb() {
+		String[][] cases = new String[][]{{"a"}, {"a", "c"}, {"b", "c", "a", "d"}, {"a", "z", "c", "b", "b"}};
+		for(String[] o : cases) {
+			ObservationSequence sequence = observations(o);
+			double expected = enumerate(sequence, new State[sequence.length()], 0, null)[1];
+			assertEquals(expected, hmm.getProb(sequence, 2), expected * 1e-9);
+		}
+	}
+
+	//测试受标注词典约束的解码和前向算法与穷举允许路径的结果一致
+	@Test
+	public void testTagDictionary() {
+		TagDictionary tagDictionary = new TagDictionary(model);
+		HMMWithSecondOrderViterbi constrained = new HMMWithSecondOrderViterbi(model, tagDictionary);
+
+		String[][] cases = new String[][]{{"a"}, {"a", "c"}, {"b", "c", "a", "d"}, {"a", "z", "c", "b", "b"}};
+		for(String[] o : cases) {
+			ObservationSequence sequence = observations(o);
+			double[] expected = enumerate(sequence, new State[sequence.length()], 0, tagDictionary);
+			StateSequence best = constrained.bestStateSeqence(sequence, 2);
+
+			assertEquals(expected[0], constrained.getProb(sequence, best, 2), expected[0] * 1e-9);
+			assertEquals(expected[1], constrained.getProb(sequence, 2), expected[1] * 1e-9);
+			for(int t = 0; t < sequence.length(); t++)
+				assertTrue(tagDictionary.isAllowed(model.getDict().getIndex(best.get(t)), model.getObservationIndex(sequence.get(t))));
+		}
+	}
+}
@@ -3,13 +3,22 @@ package hust.tools.hmm.model;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.learn.SupervisedWittenBellHMMTrainer;
 import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
 import hust.tools.hmm.utils.Observation;
 import hust.tools.hmm.utils.ObservationSequence;
 import hust.tools.hmm.utils.State;
@@ -28,6 +37,7 @@ import hust.tools.hmm.utils.StringState;
 public class HMMWithViterbiTest {
 
 	private int order;
+	private HMModel hmModel;
 	private HMM model;
 	private ObservationSequence sequence;
 	
@@ -76,7 +86,8 @@ public class HMMWithViterbiTest {
 		samples.add(new SupervisedHMMSample(stateSequence, observationSequence));
 		
 		SupervisedAdditionHMMTrainer learner = new SupervisedAdditionHMMTrainer(samples, order, 1.0);
-		model = new HMMWithViterbi(learner.train());
+		hmModel = learner.train();
+		model = new HMMWithViterbi(hmModel);
 		
 		Observation[] testObservaitons = new StringObservation[]{
 				new StringObservation("2"),
@@ -91,6 +102,109 @@ public class HMMWithViterbiTest {
 		assertEquals(new StateSequence(states), model.bestStateSeqence(sequence, 1));
 	}
 
+	//测试k-best解码返回的路径与穷举所有路径得到的前k条路径一致
+	@Test
+	public void testBestStateSeqences() {
+		//穷举2个状态、长度为3的全部8条路径
+		State[] types = new StringState[]{new StringState("a"), new StringState("b")};
+		double[] all = new double[8];
+		for(int n = 0; n < all.length; n++) {
+			State[] states = new State[]{types[n >> 2 & 1], types[n >> 1 & 1], types[n & 1]};
+			all[n] = model.getProb(sequence, new StateSequence(states), order);
+		}
+		Arrays.sort(all);
+		
+		for(int k = 1; k <= 10; k++) {
+			List<StateSequenceWithScore> kBest = ((HMMWithViterbi) model).bestStateSeqences(sequence, order, k);
+			assertEquals(Math.min(k, all.length), kBest.size());
+			assertEquals(model.bestStateSeqence(sequence, order), kBest.get(0).getStateSequence());
+			
+			HashSet<StateSequence> distinct = new HashSet<>();
+			for(int r = 0; r < kBest.size(); r++) {
+				StateSequenceWithScore path = kBest.get(r);
+				distinct.add(path.getStateSequence());
+				assertEquals(all[all.length - 1 - r], Math.pow(10, path.getScore()), 1e-15);
+				assertEquals(model.getProb(sequence, path.getStateSequence(), order), Math.pow(10, path.getScore()), 1e-15);
+			}
+			assertEquals(kBest.size(), distinct.size());
+		}
+	}
+
+	//测试同一解码器被多个线程共享时的解码结果
+	@Test
+	public void testBestStateSeqenceConcurrently() throws Exception {
+		final State[] states = new StringState[]{new StringState("b"), new StringState("a"), new StringState("a")};
+		final Observation[] longObservations = new StringObservation[40];
+		for(int i = 0; i < longObservations.length; i++)
+			longObservations[i] = new StringObservation(Integer.toString(i % 5 + 1));
+		final StateSequence longExpected = model.bestStateSeqence(new ObservationSequence(longObservations), order);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Boolean>> futures = new ArrayList<>();
+		for(int n = 0; n < 16; n++) {
+			futures.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					for(int i = 0; i < 100; i++) {
+						if(!new StateSequence(states).equals(model.bestStateSeqence(sequence, order)))
+							return false;
+						if(!longExpected.equals(model.bestStateSeqence(new ObservationSequence(longObservations), order)))
+							return false;
+					}
+					
+					return true;
+				}
+			}));
+		}
+		
+		for(Future<Boolean> future : futures)
+			assertTrue(future.get());
+		executor.shutdown();
+	}
+
+	//测试前向算法与后向算法的概率一致，且长序列的对数概率不下溢
+	@Test
+	public void testForwardBackwardLogProb() {
+		ForwardAlgorithm forward = new ForwardAlgorithm(hmModel, sequence);
+		BackwardAlgorithm backward = new BackwardAlgorithm(hmModel, sequence);
+		assertEquals(forward.getLogProb(), backward.getLogProb(), 1e-12);
+		assertEquals(Math.log(model.getProb(sequence, order)), forward.getLogProb(), 1e-12);
+		
+		Observation[] longObservations = new StringObservation[1000];
+		for(int i = 0; i < longObservations.length; i++)
+			longObservations[i] = new StringObservation(Integer.toString(i % 5 + 1));
+		ObservationSequence longSequence = new ObservationSequence(longObservations);
+		forward = new ForwardAlgorithm(hmModel, longSequence);
+		backward = new BackwardAlgorithm(hmModel, longSequence);
+		assertTrue(forward.getLogProb() > Double.NEGATIVE_INFINITY);
+		assertEquals(forward.getLogProb(), backward.getLogProb(), 1e-8);
+	}
+
+	//测试回退模型的稀疏Viterbi归纳计算与数组模型的逐对计算得到相同的解码结果
+	@Test
+	public void testSparseViterbiStep() throws Exception {
+		HMModelBasedBO backoff = (HMModelBasedBO) new SupervisedWittenBellHMMTrainer(SampleCorpus.samples(), 1).train();
+		HMModelBasedArray dense = new HMModelBasedArray(backoff);
+		
+		int seen = 0;
+		for(int j = 0; j < backoff.statesCount(); j++)
+			seen += backoff.bigramSources(j).length;
+		assertTrue(seen < backoff.statesCount() * backoff.statesCount());
+		
+		TagDictionary dictionary = new TagDictionary(backoff);
+		String[] o = new String[]{"a", "b", "c", "d", "z"};
+		Random random = new Random(3);
+		for(int n = 0; n < 200; n++) {
+			Observation[] observations = new StringObservation[1 + random.nextInt(12)];
+			for(int t = 0; t < observations.length; t++)
+				observations[t] = new StringObservation(o[random.nextInt(o.length)]);
+			ObservationSequence sequence = new ObservationSequence(observations);
+		
+			assertEquals(new HMMWithViterbi(dense).bestStateSeqence(sequence, 1), new HMMWithViterbi(backoff).bestStateSeqence(sequence, 1));
+			assertEquals(new HMMWithViterbi(dense, dictionary).bestStateSeqence(sequence, 1), new HMMWithViterbi(backoff, dictionary).bestStateSeqence(sequence, 1));
+		}
+	}
+	
 	@Test
 	public void testGetProb() {
 		double[] probs = new double[]{
@@ -0,0 +1,107 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.learn.SupervisedWittenBellHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 基于数组的HMM模型单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedArrayTest {
+
+	private HMModel boModel;
+	private HMModelBasedArray model;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.samples();
+
+		SupervisedAdditionHMMTrainer learner = new SupervisedAdditionHMMTrainer(samples, 1, 1.0);
+		boModel = learner.train();
+		model = new HMModelBasedArray(boModel);
+	}
+
+	//测试数组模型与回退模型的索引查询结果一致
+	@Test
+	public void testIndexLookup() {
+		for(int i = 0; i < boModel.statesCount(); i++) {
+			assertTrue(boModel.getLogPi(i) == model.getLogPi(i));
+
+			for(int j = 0; j < boModel.statesCount(); j++)
+				assertTrue(boModel.transitionLogProb(i, j) == model.transitionLogProb(i, j));
+
+			for(int t = -1; t < boModel.observationsCount(); t++) {
+				assertTrue(boModel.emissionLogProb(i, t) == model.emissionLogProb(i, t));
+				assertTrue(boModel.emissionLogProb(i, t) == model.emissionLogProbs(t)[i]);
+			}
+		}
+	}
+
+	//测试数组模型与回退模型的对象查询结果一致
+	@Test
+	public void testObjectLookup() {
+		State start = new StringState("3");
+		State target = new StringState("4");
+		assertTrue(boModel.transitionLogProb(new StateSequence(start), target) == model.transitionLogProb(new StateSequence(start), target));
+
+		Observation unknown = new StringObservation("z");
+		assertEquals(-1, model.getObservationIndex(unknown));
+		assertTrue(boModel.emissionLogProb(start, unknown) == model.emissionLogProb(start, unknown));
+		assertTrue(boModel.getLogPi(start) == model.getLogPi(start));
+	}
+
+	//测试数组模型的解码结果与回退模型一致
+	@Test
+	public void testBestStateSeqence() {
+		Observation[] observations = new StringObservation[]{
+				new StringObservation("a"),
+				new StringObservation("c"),
+				new StringObservation("z"),
+				new StringObservation("d")};
+		ObservationSequence sequence = new ObservationSequence(observations);
+
+		assertEquals(new HMMWithViterbi(boModel).bestStateSeqence(sequence, 1), new HMMWithViterbi(model).bestStateSeqence(sequence, 1));
+	}
+
+	//测试由数组重新构造的概率矩阵与源模型一致
+	@Test
+	public void testMatrices() {
+		assertEquals(boModel.getPi(), model.getPi());
+		assertEquals(boModel.statesCount() * boModel.statesCount(), model.getTransitionMatrix().size());
+		for(int i = 0; i < boModel.statesCount(); i++) {
+			StateSequence start = new StateSequence(boModel.getState(i));
+			for(int j = 0; j < boModel.statesCount(); j++) {
+				StateSequence sequence = new StateSequence(new State[]{boModel.getState(i), boModel.getState(j)});
+				assertEquals(boModel.transitionLogProb(start, boModel.getState(j)), model.getTransitionMatrix().get(sequence).getLog_prob(), 0);
+			}
+		}
+
+		assertEquals(model, new HMModelBasedArray(boModel));
+		assertEquals(model.hashCode(), new HMModelBasedArray(boModel).hashCode());
+	}
+
+	//测试拒绝由2阶模型构造数组模型
+	@Test(expected = IllegalArgumentException.class)
+	public void testSecondOrder() throws Exception {
+		new HMModelBasedArray(new SupervisedWittenBellHMMTrainer(SampleCorpus.samples(), 2).train());
+	}
+}
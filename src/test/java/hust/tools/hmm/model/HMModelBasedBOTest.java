@@ -91,6 +91,28 @@ public class HMModelBasedBOTest {
 		assertTrue(Math.log10(2.0/6) == model.transitionLogProb(start, target));
 	}
 	
+	//测试按索引返回的转移概率与按状态序列返回的转移概率一致（包括回退的转移）
+	@Test
+	public void testTransitionLogProbIntInt() {
+		for(int i = 0; i < model.statesCount(); i++) {
+			StateSequence start = new StateSequence(model.getState(i));
+			for(int j = 0; j < model.statesCount(); j++)
+				assertTrue(model.transitionLogProb(start, model.getState(j)) == model.transitionLogProb(i, j));
+		}
+	}
+	
+	//测试按索引返回的2阶转移概率与按状态序列返回的转移概率一致（包括回退的转移）
+	@Test
+	public void testTransitionLogProbIntIntInt() {
+		for(int h = 0; h < model.statesCount(); h++) {
+			for(int i = 0; i < model.statesCount(); i++) {
+				StateSequence start = new StateSequence(new State[]{model.getState(h), model.getState(i)});
+				for(int j = 0; j < model.statesCount(); j++)
+					assertEquals(model.transitionLogProb(start, model.getState(j)), model.transitionLogProb(h, i, j), 1e-12);
+			}
+		}
+	}
+	
 	//测试返回给定发射的概率
 	@Test
 	public void testemissionLogProbStateObservation() {
@@ -126,6 +148,24 @@ public class HMModelBasedBOTest {
 		
 		observation = 3;
 		assertTrue(Math.log10(1.0/9) ==  model.emissionLogProb(state, observation));
+		
+		observation = -1;
+		assertTrue(Math.log10(1.0/9) ==  model.emissionLogProb(state, observation));
+	}
+
+	//测试按观测返回的发射向量与逐个查询的发射概率一致，未登录观测共享同一个向量
+	@Test
+	public void testEmissionLogProbs() {
+		model.materializeEmissionColumns(1);
+		for(int t = -1; t < model.observationsCount(); t++) {
+			double[] column = model.emissionLogProbs(t);
+			assertEquals(model.statesCount(), column.length);
+			assertSame(column, model.emissionLogProbs(t));
+			for(int i = 0; i < model.statesCount(); i++)
+				assertTrue(model.emissionLogProb(i, t) == column[i]);
+		}
+		
+		assertSame(model.emissionLogProbs(-1), model.emissionLogProbs(model.getObservationIndex(new StringObservation("z"))));
 	}
 
 	//测试返回所有观测状态
@@ -0,0 +1,129 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hust.tools.hmm.io.BinaryFileHMMWriter;
+import hust.tools.hmm.io.MappedFileHMMWriter;
+import hust.tools.hmm.learn.SupervisedWittenBellHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 基于内存映射文件的HMM模型单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedMappedFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HMModelBasedBO model;
+	private HMModelBasedMappedFile mapped;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.samples();
+
+		model = (HMModelBasedBO) new SupervisedWittenBellHMMTrainer(samples, 1).train();
+
+		File file = folder.newFile("model.map");
+		new MappedFileHMMWriter(model, file).persist();
+		mapped = new HMModelBasedMappedFile(file);
+	}
+
+	//测试映射模型的概率与原模型相同
+	@Test
+	public void testLogProb() {
+		int N = model.statesCount();
+		int M = model.observationsCount();
+		assertEquals(N, mapped.statesCount());
+		assertEquals(M, mapped.observationsCount());
+		assertEquals(model.getDict(), mapped.getDict());
+
+		for(int i = 0; i < N; i++) {
+			assertEquals(model.getLogPi(i), mapped.getLogPi(i), 0);
+			for(int j = 0; j < N; j++)
+				assertEquals(model.transitionLogProb(i, j), mapped.transitionLogProb(i, j), 0);
+			for(int t = -1; t < M; t++)
+				assertEquals(model.emissionLogProb(i, t), mapped.emissionLogProb(i, t), 0);
+		}
+
+		for(int t = -1; t < M; t++)
+			assertArrayEquals(model.emissionLogProbs(t), mapped.emissionLogProbs(t), 0);
+
+		State s1 = new StringState("1");
+		State s2 = new StringState("2");
+		assertEquals(model.transitionLogProb(new StateSequence(s1), s2), mapped.transitionLogProb(new StateSequence(s1), s2), 0);
+		assertEquals(model.emissionLogProb(s1, new StringObservation("z")), mapped.emissionLogProb(s1, new StringObservation("z")), 0);
+	}
+
+	//测试映射模型的解码结果及由其构造的标注词典与原模型相同
+	@Test
+	public void testDecode() {
+		ObservationSequence sequence = SampleCorpus.observations("b", "c", "a", "d", "z", "a", "c");
+
+		assertEquals(new HMMWithViterbi(model).bestStateSeqence(sequence, 1), new HMMWithViterbi(mapped).bestStateSeqence(sequence, 1));
+
+		TagDictionary expected = new TagDictionary(model);
+		TagDictionary actual = new TagDictionary(mapped);
+		for(int t = -1; t < model.observationsCount(); t++)
+			assertArrayEquals(expected.getStates(t), actual.getStates(t));
+	}
+
+	//测试序列化后重新映射同一文件
+	@Test
+	public void testSerialize() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(mapped);
+		oos.close();
+
+		Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(mapped, copy);
+		assertEquals(mapped.hashCode(), copy.hashCode());
+	}
+
+	//测试拒绝写出2阶模型，且不创建模型文件
+	@Test
+	public void testSecondOrder() throws Exception {
+		HMModel secondOrder = new SupervisedWittenBellHMMTrainer(SampleCorpus.samples(), 2).train();
+		File file = new File(folder.getRoot(), "order2.map");
+		try {
+			new MappedFileHMMWriter(secondOrder, file).persist();
+			fail();
+		} catch(IllegalArgumentException e) {
+			assertFalse(file.exists());
+		}
+	}
+
+	//测试拒绝映射其他格式的模型文件
+	@Test(expected = IOException.class)
+	public void testWrongMagic() throws Exception {
+		File file = folder.newFile("model.bin");
+		new BinaryFileHMMWriter(model, file).persist();
+
+		new HMModelBasedMappedFile(file);
+	}
+}
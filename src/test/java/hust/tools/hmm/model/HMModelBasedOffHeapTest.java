@@ -0,0 +1,81 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedWittenBellHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 概率存放在堆外内存中的HMM模型单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedOffHeapTest {
+
+	private HMModelBasedBO model;
+	private HMModelBasedOffHeap offHeap;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.samples();
+
+		model = (HMModelBasedBO) new SupervisedWittenBellHMMTrainer(samples, 1).train();
+		offHeap = new HMModelBasedOffHeap(model);
+	}
+
+	//测试堆外模型的概率与原模型相同，发射散列表只保存出现过的发射
+	@Test
+	public void testLogProb() {
+		int N = model.statesCount();
+		int M = model.observationsCount();
+		assertEquals(N, offHeap.statesCount());
+		assertEquals(M, offHeap.observationsCount());
+
+		for(int i = 0; i < N; i++) {
+			assertEquals(model.getLogPi(i), offHeap.getLogPi(i), 0);
+			for(int j = 0; j < N; j++)
+				assertEquals(model.transitionLogProb(i, j), offHeap.transitionLogProb(i, j), 0);
+			for(int t = -1; t < M; t++)
+				assertEquals(model.emissionLogProb(i, t), offHeap.emissionLogProb(i, t), 0);
+		}
+
+		for(int t = -1; t < M; t++)
+			assertArrayEquals(model.emissionLogProbs(t), offHeap.emissionLogProbs(t), 0);
+
+		int count = 0;
+		for(EmissionProbEntry entry : model.getEmissionMatrix().values())
+			count += entry.size() - 1;
+		assertEquals(count, offHeap.emissionCount());
+
+		State s1 = new StringState("1");
+		assertEquals(model.emissionLogProb(s1, new StringObservation("z")), offHeap.emissionLogProb(s1, new StringObservation("z")), 0);
+		assertEquals(model.getEmissionMatrix(), offHeap.getEmissionMatrix());
+	}
+
+	//测试堆外模型的解码结果与原模型相同
+	@Test
+	public void testDecode() {
+		ObservationSequence sequence = SampleCorpus.observations("b", "c", "a", "d", "z", "a", "c");
+
+		assertEquals(new HMMWithViterbi(model).bestStateSeqence(sequence, 1), new HMMWithViterbi(offHeap).bestStateSeqence(sequence, 1));
+	}
+
+	//测试拒绝由2阶模型构造堆外模型
+	@Test(expected = IllegalArgumentException.class)
+	public void testSecondOrder() throws Exception {
+		new HMModelBasedOffHeap(new SupervisedWittenBellHMMTrainer(SampleCorpus.samples(), 2).train());
+	}
+}
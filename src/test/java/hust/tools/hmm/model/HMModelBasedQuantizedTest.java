@@ -0,0 +1,173 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.io.QuantizedFileHMMReader;
+import hust.tools.hmm.io.QuantizedFileHMMWriter;
+import hust.tools.hmm.learn.SupervisedWittenBellHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 概率对数量化存放的HMM模型单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class HMModelBasedQuantizedTest {
+
+	private HMModelBasedBO model;
+	private ObservationSequence sequence;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.samples();
+
+		model = (HMModelBasedBO) new SupervisedWittenBellHMMTrainer(samples, 1).train();
+
+		sequence = SampleCorpus.observations("b", "c", "a", "d", "z", "a", "c");
+	}
+
+	//测试码本量化：不同的值不超过码本大小时无损，否则误差很小，负无穷保持不变
+	@Test
+	public void testQuantize() {
+		Random random = new Random(3);
+		double[] values = new double[1000];
+		for(int n = 0; n < values.length; n++)
+			values[n] = n % 100 == 0 ? Double.NEGATIVE_INFINITY : -8 * random.nextDouble();
+
+		QuantizedTable table = QuantizedTable.quantize(values, 16);
+		for(int n = 0; n < values.length; n++)
+			assertEquals(values[n], table.get(n), 0);
+
+		table = QuantizedTable.quantize(values, 8);
+		assertTrue(table.getCodebook().length <= 256);
+		for(int n = 0; n < values.length; n++) {
+			if(values[n] == Double.NEGATIVE_INFINITY)
+				assertEquals(Double.NEGATIVE_INFINITY, table.get(n), 0);
+			else
+				assertEquals(values[n], table.get(n), 0.1);
+		}
+
+		table = QuantizedTable.quantize(values, 32);
+		for(int n = 0; n < values.length; n++)
+			assertEquals(values[n], table.get(n), 1e-6);
+
+		//码本的开销被大表分摊后，精度越低占用越小
+		values = new double[1 << 20];
+		for(int n = 0; n < values.length; n++)
+			values[n] = -8 * random.nextDouble();
+		long float32 = QuantizedTable.quantize(values, 32).sizeInBytes();
+		long bits16 = QuantizedTable.quantize(values, 16).sizeInBytes();
+		long bits8 = QuantizedTable.quantize(values, 8).sizeInBytes();
+		assertEquals(4L * values.length, float32);
+		assertTrue(bits16 < float32 * 2 / 3);
+		assertTrue(bits8 < float32 / 3);
+	}
+
+	//测试量化模型的概率与原模型相同或足够接近，解码结果相同
+	@Test
+	public void testLogProb() {
+		int N = model.statesCount();
+		int M = model.observationsCount();
+		HMModelBasedQuantized float32 = new HMModelBasedQuantized(model, 32);
+		HMModelBasedQuantized bits16 = new HMModelBasedQuantized(model, 16);
+		HMModelBasedQuantized bits8 = new HMModelBasedQuantized(model, 8);
+
+		for(int i = 0; i < N; i++) {
+			assertEquals(model.getLogPi(i), float32.getLogPi(i), 1e-6);
+			assertEquals(model.getLogPi(i), bits16.getLogPi(i), 0);
+			for(int j = 0; j < N; j++) {
+				assertEquals(model.transitionLogProb(i, j), float32.transitionLogProb(i, j), 1e-6);
+				assertEquals(model.transitionLogProb(i, j), bits16.transitionLogProb(i, j), 0);
+			}
+			for(int t = -1; t < M; t++) {
+				assertEquals(model.emissionLogProb(i, t), float32.emissionLogProb(i, t), 1e-6);
+				assertEquals(model.emissionLogProb(i, t), bits16.emissionLogProb(i, t), 0);
+				assertArrayEquals(model.emissionLogProbs(t), bits16.emissionLogProbs(t), 0);
+			}
+		}
+
+		StateSequence expected = new HMMWithViterbi(model).bestStateSeqence(sequence, 1);
+		assertEquals(expected, new HMMWithViterbi(float32).bestStateSeqence(sequence, 1));
+		assertEquals(expected, new HMMWithViterbi(bits16).bestStateSeqence(sequence, 1));
+		assertEquals(expected, new HMMWithViterbi(bits8).bestStateSeqence(sequence, 1));
+
+	}
+
+	//测试稀疏的大模型：大量重复的回退值不占用码本，未出现的发射无损，出现过的发射误差很小，解码结果基本相同
+	@Test
+	public void testSparseModel() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.zipfSamples(3000, 20, 4000, 7);
+		HMModelBasedBO sparse = (HMModelBasedBO) new SupervisedWittenBellHMMTrainer(samples.subList(0, 2500), 1).train();
+		HMModelBasedQuantized bits8 = new HMModelBasedQuantized(sparse, 8);
+
+		int N = sparse.statesCount();
+		int M = sparse.observationsCount();
+		Set<Integer> codes = new HashSet<>();
+		double maxError = 0;
+		int seen = 0;
+		for(int i = 0; i < N; i++) {
+			double unknown = sparse.emissionLogProb(i, -1);
+			assertEquals(unknown, bits8.emissionLogProb(i, -1), 0);
+			for(int t = 0; t < M; t++) {
+				double logProb = sparse.emissionLogProb(i, t);
+				if(logProb == unknown) {
+					assertEquals(unknown, bits8.emissionLogProb(i, t), 0);
+				} else {
+					seen++;
+					codes.add(bits8.getEmissionTable().getCode(t * N + i));
+					maxError = Math.max(maxError, Math.abs(logProb - bits8.emissionLogProb(i, t)));
+				}
+			}
+		}
+		assertTrue(seen < N * M / 4);
+		assertTrue(maxError < 0.05);
+		assertTrue(codes.size() > 200);
+
+		int same = 0;
+		List<SupervisedHMMSample> test = samples.subList(2500, samples.size());
+		HMMWithViterbi expected = new HMMWithViterbi(sparse);
+		HMMWithViterbi actual = new HMMWithViterbi(bits8);
+		for(SupervisedHMMSample sample : test) {
+			if(expected.bestStateSeqence(sample.getObservationSequence(), 1).equals(actual.bestStateSeqence(sample.getObservationSequence(), 1)))
+				same++;
+		}
+		assertTrue(same >= test.size() * 0.95);
+	}
+
+	//测试量化模型写出后读回与原量化模型相同
+	@Test
+	public void testReadWrite() throws Exception {
+		for(int bits : new int[]{8, 16, 32}) {
+			HMModelBasedQuantized quantized = new HMModelBasedQuantized(model, bits);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			new QuantizedFileHMMWriter(quantized, new DataOutputStream(bytes)).persist();
+
+			HMModelBasedQuantized copy = new QuantizedFileHMMReader(new ByteArrayInputStream(bytes.toByteArray())).readModel();
+			assertEquals(quantized, copy);
+			assertEquals(bits, copy.getBits());
+		}
+	}
+
+	//测试拒绝由2阶模型构造量化模型
+	@Test(expected = IllegalArgumentException.class)
+	public void testSecondOrder() throws Exception {
+		new HMModelBasedQuantized(new SupervisedWittenBellHMMTrainer(SampleCorpus.samples(), 2).train(), 16);
+	}
+}
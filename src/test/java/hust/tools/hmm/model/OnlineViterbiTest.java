@@ -0,0 +1,97 @@
+package hust.tools.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+
+/**
+ *<ul>
+ *<li>Description: 固定延迟的在线维特比解码单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class OnlineViterbiTest {
+
+	private HMModel model;
+	private ObservationSequence sequence;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = SampleCorpus.samples();
+
+		model = new SupervisedAdditionHMMTrainer(samples, 1, 1.0).train();
+
+		sequence = SampleCorpus.observations("b", "c", "a", "d", "z", "a", "c", "b", "b", "d", "a", "c");
+	}
+
+	private StateSequence decode(OnlineViterbi decoder, ObservationSequence observations) {
+		List<State> result = new ArrayList<>();
+		for(int t = 0; t < observations.length(); t++) {
+			result.addAll(decoder.push(observations.get(t)));
+			assertTrue(decoder.getPending() <= decoder.getLag());
+			assertEquals(t + 1, result.size() + decoder.getPending());
+		}
+		result.addAll(decoder.flush());
+
+		return new StateSequence(result.toArray(new State[result.size()]));
+	}
+
+	//测试延迟不小于观测序列长度时，在线解码与离线Viterbi解码得到的最优路径概率相同
+	@Test
+	public void testLongLag() {
+		HMMWithViterbi viterbi = new HMMWithViterbi(model);
+		StateSequence expected = viterbi.bestStateSeqence(sequence, 1);
+		StateSequence actual = decode(new OnlineViterbi(model, sequence.length()), sequence);
+
+		assertEquals(sequence.length(), actual.length());
+		double expectedProb = viterbi.getProb(sequence, expected, 1);
+		assertEquals(expectedProb, viterbi.getProb(sequence, actual, 1), expectedProb * 1e-9);
+	}
+
+	//测试给定标注词典时在线解码与受约束的离线Viterbi解码一致
+	@Test
+	public void testTagDictionary() {
+		TagDictionary dictionary = new TagDictionary(model);
+		HMMWithViterbi viterbi = new HMMWithViterbi(model, dictionary);
+		StateSequence expected = viterbi.bestStateSeqence(sequence, 1);
+		StateSequence actual = decode(new OnlineViterbi(model, sequence.length(), dictionary), sequence);
+
+		double expectedProb = viterbi.getProb(sequence, expected, 1);
+		assertEquals(expectedProb, viterbi.getProb(sequence, actual, 1), expectedProb * 1e-9);
+	}
+
+	//测试长观测流在短延迟下每个时刻都被输出且未确定的时刻不超过延迟，flush后可开始新的观测流
+	@Test
+	public void testLongStream() {
+		Random random = new Random(7);
+		String[] o = new String[]{"a", "b", "c", "d", "z"};
+		Observation[] observations = new StringObservation[20000];
+		for(int i = 0; i < observations.length; i++)
+			observations[i] = new StringObservation(o[random.nextInt(o.length)]);
+
+		OnlineViterbi decoder = new OnlineViterbi(model, 3);
+		assertEquals(observations.length, decode(decoder, new ObservationSequence(observations)).length());
+		assertEquals(0, decoder.getPending());
+
+		StateSequence expected = decode(new OnlineViterbi(model, sequence.length()), sequence);
+		decoder = new OnlineViterbi(model, sequence.length());
+		decode(decoder, new ObservationSequence(observations));
+		assertEquals(expected, decode(decoder, sequence));
+	}
+}
@@ -0,0 +1,125 @@
+package hust.tools.hmm.model;
+
+import static hust.tools.hmm.testutil.SampleCorpus.sample;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hust.tools.hmm.learn.SupervisedAdditionHMMTrainer;
+import hust.tools.hmm.learn.SupervisedWittenBellHMMTrainer;
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.testutil.SampleCorpus;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 标注词典及受其约束的解码单元测试
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public class TagDictionaryTest {
+
+	private HMModel model;
+	private TagDictionary tagDictionary;
+	private ObservationSequence sequence;
+
+	@Before
+	public void setUp() throws Exception {
+		List<SupervisedHMMSample> samples = new ArrayList<>();
+		samples.add(sample(new String[]{"1", "2", "3", "4", "3", "2", "4", "5"}, new String[]{"a", "b", "c", "d", "d", "c", "b", "b"}));
+		samples.add(sample(new String[]{"3", "3", "4", "5", "2", "2", "1", "3", "5"}, new String[]{"c", "e", "b", "c", "c", "e", "d", "e", "e"}));
+		samples.add(sample(new String[]{"5", "2", "1", "4", "3", "1", "1"}, new String[]{"a", "b", "a", "c", "b", "a", "d"}));
+
+		model = new SupervisedAdditionHMMTrainer(samples, 1, 1.0).train();
+		tagDictionary = new TagDictionary(model);
+
+		Observation[] observations = new StringObservation[]{
+				new StringObservation("e"),
+				new StringObservation("a"),
+				new StringObservation("z"),
+				new StringObservation("c")};
+		sequence = new ObservationSequence(observations);
+	}
+
+	/**
+	 * 穷举标注词典允许的所有隐藏序列，返回{最大路径概率, 路径概率之和}
+	 */
+	private double[] enumerate(HMM hmm, State[] path, int t) {
+		if(t == path.length) {
+			double prob = hmm.getProb(sequence, new StateSequence(path.clone()), 1);
+			return new double[]{prob, prob};
+		}
+
+		double[] result = new double[2];
+		for(int i : tagDictionary.getStates(model.getObservationIndex(sequence.get(t)))) {
+			path[t] = model.getState(i);
+			double[] sub = enumerate(hmm, path, t + 1);
+			result[0] = Math.max(result[0], sub[0]);
+			result[1] += sub[1];
+		}
+
+		return result;
+	}
+
+	//测试已登录观测只允许训练语料中出现过的隐藏状态，未登录观测允许全部隐藏状态
+	@Test
+	public void testGetStates() {
+		int e = model.getObservationIndex(new StringObservation("e"));
+		int[] states = tagDictionary.getStates(e);
+		assertEquals(3, states.length);
+		for(String state : new String[]{"2", "3", "5"})
+			assertTrue(tagDictionary.isAllowed(model.getDict().getIndex(new StringState(state)), e));
+
+		assertEquals(model.statesCount(), tagDictionary.size(-1));
+	}
+
+	//测试受约束的Viterbi、beamSearch和前向算法与穷举允许路径的结果一致
+	@Test
+	public void testConstrainedDecoding() {
+		HMMWithViterbi viterbi = new HMMWithViterbi(model, tagDictionary);
+		double[] expected = enumerate(viterbi, new State[sequence.length()], 0);
+
+		StateSequence best = viterbi.bestStateSeqence(sequence, 1);
+		assertEquals(expected[0], viterbi.getProb(sequence, best, 1), expected[0] * 1e-9);
+		assertEquals(expected[1], viterbi.getProb(sequence, 1), expected[1] * 1e-9);
+		assertEquals(best, viterbi.bestStateSeqences(sequence, 1, 3).get(0).getStateSequence());
+
+		HMMWithBeamSearch beam = new HMMWithBeamSearch(model, 10000, tagDictionary);
+		StateSequence beamBest = beam.bestStateSeqence(sequence, 2);
+		assertEquals(expected[0], viterbi.getProb(sequence, beamBest, 1), expected[0] * 1e-9);
+
+		for(int t = 0; t < sequence.length(); t++)
+			assertTrue(tagDictionary.isAllowed(model.getDict().getIndex(best.get(t)), model.getObservationIndex(sequence.get(t))));
+	}
+
+	//测试由各后端模型的seenStates构造的标注词典相同
+	@Test
+	public void testSeenStates() throws Exception {
+		HMModel sparse = new SupervisedWittenBellHMMTrainer(SampleCorpus.zipfSamples(500, 20, 2000, 11), 1).train();
+		TagDictionary expected = new TagDictionary(sparse);
+		TagDictionary[] dictionaries = new TagDictionary[]{
+				new TagDictionary(new HMModelBasedArray(sparse)),
+				new TagDictionary(new HMModelBasedOffHeap(sparse)),
+				new TagDictionary(new HMModelBasedQuantized(sparse, 16))};
+
+		int restricted = 0;
+		for(int t = -1; t < sparse.observationsCount(); t++) {
+			for(TagDictionary dictionary : dictionaries)
+				assertArrayEquals(expected.getStates(t), dictionary.getStates(t));
+			if(expected.size(t) < sparse.statesCount())
+				restricted++;
+		}
+		assertTrue(restricted > sparse.observationsCount() / 2);
+	}
+}
@@ -0,0 +1,109 @@
+package hust.tools.hmm.testutil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import hust.tools.hmm.stream.SupervisedHMMSample;
+import hust.tools.hmm.utils.Observation;
+import hust.tools.hmm.utils.ObservationSequence;
+import hust.tools.hmm.utils.State;
+import hust.tools.hmm.utils.StateSequence;
+import hust.tools.hmm.utils.StringObservation;
+import hust.tools.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 单元测试共用的标注样本，隐藏状态为1至5，观测为a至d
+ *<li>Company: HUST
+ *<li>@author Sonly
+ *<li>Date: 2026年10月18日
+ *</ul>
+ */
+public final class SampleCorpus {
+
+	private SampleCorpus() {
+	}
+
+	/**
+	 * 返回3个标注样本组成的训练语料，每次调用返回新的列表
+	 * @return	训练语料
+	 */
+	public static List<SupervisedHMMSample> samples() {
+		List<SupervisedHMMSample> samples = new ArrayList<>();
+		samples.add(sample(new String[]{"1", "2", "3", "4", "3", "2", "4", "5"}, new String[]{"a", "b", "c", "d", "d", "c", "b", "b"}));
+		samples.add(sample(new String[]{"3", "3", "4", "5", "2", "2", "1", "3", "5"}, new String[]{"c", "a", "b", "c", "c", "a", "d", "a", "a"}));
+		samples.add(sample(new String[]{"5", "2", "1", "4", "3", "1", "1"}, new String[]{"a", "b", "a", "c", "b", "a", "d"}));
+
+		return samples;
+	}
+
+	/**
+	 * 随机生成较大的标注语料，训练得到的发射矩阵稀疏：观测按Zipf分布出现，多数观测只由一个隐藏状态发射，约1/10的出现由相邻的状态发射
+	 * @param sentences		样本数量
+	 * @param states		隐藏状态数量
+	 * @param vocabulary	观测数量
+	 * @param seed			随机数种子
+	 * @return				训练语料
+	 */
+	public static List<SupervisedHMMSample> zipfSamples(int sentences, int states, int vocabulary, long seed) {
+		Random random = new Random(seed);
+		int words = vocabulary / states;
+		double[] cumulative = new double[words];
+		double sum = 0;
+		for(int r = 0; r < words; r++) {
+			sum += 1.0 / (r + 1);
+			cumulative[r] = sum;
+		}
+
+		List<SupervisedHMMSample> samples = new ArrayList<>();
+		for(int n = 0; n < sentences; n++) {
+			int length = 5 + random.nextInt(15);
+			String[] h = new String[length];
+			String[] o = new String[length];
+			int tag = random.nextInt(states);
+			for(int k = 0; k < length; k++) {
+				if(k > 0)
+					tag = random.nextDouble() < 0.6 ? (tag * 7 + 3) % states : random.nextInt(states);
+
+				int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+				rank = Math.min(rank < 0 ? -rank - 1 : rank, words - 1);
+				int owner = random.nextDouble() < 0.1 ? (tag + 1) % states : tag;
+				h[k] = "s" + tag;
+				o[k] = "w" + (rank * states + owner);
+			}
+
+			samples.add(sample(h, o));
+		}
+
+		return samples;
+	}
+
+	/**
+	 * 由隐藏状态和观测的名称构造标注样本
+	 * @param h	隐藏状态
+	 * @param o	观测，与隐藏状态等长
+	 * @return	标注样本
+	 */
+	public static SupervisedHMMSample sample(String[] h, String[] o) {
+		State[] states = new StringState[h.length];
+		for(int i = 0; i < h.length; i++)
+			states[i] = new StringState(h[i]);
+
+		return new SupervisedHMMSample(new StateSequence(states), observations(o));
+	}
+
+	/**
+	 * 由观测的名称构造观测序列
+	 * @param o	观测
+	 * @return	观测序列
+	 */
+	public static ObservationSequence observations(String... o) {
+		Observation[] observations = new StringObservation[o.length];
+		for(int i = 0; i < o.length; i++)
+			observations[i] = new StringObservation(o[i]);
+
+		return new ObservationSequence(observations);
+	}
+}